@@ -0,0 +1,62 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.acl.AclRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AclRepositoryBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    private int size;
+
+    private Path directory;
+    private AclRepository repository;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = BenchmarkSupport.createTempDirectory();
+        var properties = BenchmarkSupport.properties(Map.of(
+                "secret", "benchmark-secret",
+                "aclPath", directory.resolve("private-keys.acl").toString(),
+                "aclSyncDelayMillis", 100L,
+                "aclKdfIterations", 210000));
+
+        var records = new LinkedHashMap<String, String>();
+        for (int i = 0; i < size; ++i)
+            records.put(Integer.toString(i), "private-key-" + i);
+
+        var writer = open(properties);
+        writer.saveAll(records);
+        writer.shutdown();
+
+        // Loads go through an index built from the file, as after a restart
+        repository = open(properties);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        repository.shutdown();
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String load() throws Exception {
+        return repository.load(Integer.toString(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    private static AclRepository open(OdysseyPkiProperties properties) throws Exception {
+        var repository = BenchmarkSupport.component(new AclRepository(), properties);
+        repository.init();
+        return repository;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.entity.Certificate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Wiring for components outside of a Spring context, fields are set the way the container would
+final class BenchmarkSupport {
+    private static final long VALIDITY_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    private BenchmarkSupport() {
+    }
+
+    static void addProvider() {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null)
+            Security.addProvider(new BouncyCastleProvider());
+    }
+
+    static OdysseyPkiProperties properties(Map<String, Object> values) {
+        var properties = new OdysseyPkiProperties();
+        values.forEach((name, value) -> inject(properties, name, value));
+        return properties;
+    }
+
+    static void inject(Object target, String name, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Injects the collaborators every instrumented repository expects
+    static <T> T component(T target, OdysseyPkiProperties properties) {
+        inject(target, "properties", properties);
+        inject(target, "meterRegistry", new SimpleMeterRegistry());
+        return target;
+    }
+
+    static Certificate issue(String alias, KeyPair subject, KeyPair issuer, boolean isCa) throws Exception {
+        return new CertificateBuilder()
+                .withSubject(subject.getPublic(), new X500Name("CN=" + alias + ", O=Odyssey, OU=Odyssey PKI, C=Serbia"))
+                .withIssuer(issuer.getPrivate(), issuer.getPublic(), new X500Name("CN=Benchmark CA, O=Odyssey, OU=Odyssey PKI, C=Serbia"))
+                .withExpiration(VALIDITY_MILLIS)
+                .withAlias(alias)
+                .withPrivateKey(subject.getPrivate())
+                .setCaCertificate(isCa)
+                .withKeyUsages(List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()))
+                .build();
+    }
+
+    static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("odyssey-benchmark");
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.entity.Certificate;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CertificateBuilderBenchmark {
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    private KeyAlgorithm algorithm;
+
+    private KeyPair issuer;
+    private KeyPair subject;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.addProvider();
+        issuer = algorithm.generate();
+        subject = algorithm.generate();
+    }
+
+    @Benchmark
+    public Certificate build() throws Exception {
+        return BenchmarkSupport.issue("leaf", subject, issuer, false);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.certificate.CertificateTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Root, one intermediate per hundred certificates, and leaves spread over the intermediates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CertificateTreeBenchmark {
+    private static final int LEAVES_PER_CA = 100;
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int size;
+
+    private Path directory;
+    private Path serialized;
+    private CertificateTree tree;
+    private List<String> aliases;
+    private List<String> intermediates;
+
+    @Setup
+    public void setUp() throws Exception {
+        tree = CertificateTree.createTree("root");
+        aliases = new ArrayList<>(size);
+        intermediates = new ArrayList<>();
+        aliases.add("root");
+
+        var caCount = Math.max(1, size / LEAVES_PER_CA);
+        for (int i = 0; i < caCount; ++i) {
+            var alias = "ca-" + i;
+            tree.addAlias("root", alias);
+            intermediates.add(alias);
+            aliases.add(alias);
+        }
+        for (int i = aliases.size(); i < size; ++i) {
+            var alias = "leaf-" + i;
+            tree.addAlias(intermediates.get(i % caCount), alias);
+            aliases.add(alias);
+        }
+
+        directory = BenchmarkSupport.createTempDirectory();
+        serialized = directory.resolve("alias-tree.dat");
+        tree.serialize(serialized.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String findParentAlias() {
+        return tree.findParentAlias(aliases.get(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public List<String> getSubtreeAliases() {
+        return tree.getSubtreeAliases(intermediates.get(ThreadLocalRandom.current().nextInt(intermediates.size())));
+    }
+
+    @Benchmark
+    public List<String> getAllAliases() {
+        return tree.getAllAliases();
+    }
+
+    @Benchmark
+    public List<String> addAndRemoveLeaf() {
+        var parent = intermediates.get(ThreadLocalRandom.current().nextInt(intermediates.size()));
+        tree.addAlias(parent, "benchmark-leaf");
+        return tree.removeAlias("benchmark-leaf");
+    }
+
+    @Benchmark
+    public void serialize() throws Exception {
+        tree.serialize(serialized.toString());
+    }
+
+    @Benchmark
+    public CertificateTree deserialize() throws Exception {
+        return CertificateTree.deserialize(serialized.toString());
+    }
+}
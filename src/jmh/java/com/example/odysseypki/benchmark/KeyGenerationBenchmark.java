@@ -0,0 +1,28 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+// Cost of a pool miss, which is what issuance pays when KeyPairPool runs dry
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyGenerationBenchmark {
+    @Param({"RSA_2048", "EC_P256", "EC_P384", "ED25519"})
+    private KeyAlgorithm algorithm;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.addProvider();
+    }
+
+    @Benchmark
+    public KeyPair generate() {
+        return algorithm.generate();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.repository.KeyStoreRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// PKCS#12 encrypts every private key entry with a slow PBE, which keeps the setup below 100k entries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyStoreRepositoryBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private Path directory;
+    private KeyStoreRepository repository;
+    private List<String> aliases;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.addProvider();
+        directory = BenchmarkSupport.createTempDirectory();
+        var properties = BenchmarkSupport.properties(Map.of(
+                "keyStorePath", directory.resolve("certificate.jks").toString(),
+                "keyStorePass", "benchmark-password"));
+
+        var keyPair = KeyAlgorithm.EC_P256.generate();
+        var template = BenchmarkSupport.issue("template", keyPair, keyPair, false);
+
+        aliases = new ArrayList<>(size);
+        var certificates = new ArrayList<Certificate>(size);
+        for (int i = 0; i < size; ++i) {
+            var alias = Integer.toString(i);
+            aliases.add(alias);
+            certificates.add(new Certificate(
+                    template.getSubject(), template.getIssuer(), alias,
+                    template.getStartDate(), template.getEndDate(),
+                    template.getPrivateKey(), template.getX509Certificate()));
+        }
+
+        var writer = BenchmarkSupport.component(new KeyStoreRepository(), properties);
+        writer.init();
+        writer.createKeyStore();
+        writer.saveAll(certificates);
+        writer.flush();
+
+        repository = BenchmarkSupport.component(new KeyStoreRepository(), properties);
+        repository.init();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public X509Certificate load() throws Exception {
+        return repository.load(aliases.get(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public Map<String, X509Certificate> loadAll() throws Exception {
+        return repository.loadAll(aliases);
+    }
+}
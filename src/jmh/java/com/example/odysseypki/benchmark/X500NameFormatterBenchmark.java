@@ -0,0 +1,42 @@
+package com.example.odysseypki.benchmark;
+
+import com.example.odysseypki.service.X500NameFormatter;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.openjdk.jmh.annotations.*;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class X500NameFormatterBenchmark {
+    private static final String NAME = "CN=Odyssey PKI Middle, O=Odyssey, OU=Odyssey PKI, L=Novi Sad, C=Serbia";
+
+    private X500Principal principal;
+    private Map<String, String> attributes;
+
+    @Setup
+    public void setUp() {
+        principal = new X500Principal(NAME);
+        attributes = X500NameFormatter.principalToMap(principal);
+    }
+
+    @Benchmark
+    public Map<String, String> principalToMap() {
+        return X500NameFormatter.principalToMap(principal);
+    }
+
+    @Benchmark
+    public X500Name formatString() {
+        return X500NameFormatter.format(NAME);
+    }
+
+    @Benchmark
+    public X500Name formatMap() {
+        return X500NameFormatter.format(attributes);
+    }
+}
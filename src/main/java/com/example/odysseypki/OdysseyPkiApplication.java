@@ -1,5 +1,6 @@
 package com.example.odysseypki;
 
+import com.example.odysseypki.certificate.SerialNumberGenerator;
 import com.example.odysseypki.service.CertificateService;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.modelmapper.ModelMapper;
@@ -20,6 +21,11 @@ public class OdysseyPkiApplication {
 		return new ModelMapper();
 	}
 
+	@Bean
+	public SerialNumberGenerator getSerialNumberGenerator(OdysseyPkiProperties properties) {
+		return properties.getSerialNumberScheme().create(properties.getNodeId());
+	}
+
 	public static void main(String[] args) throws IOException {
 		Security.addProvider(new BouncyCastleProvider());
 		var context = SpringApplication.run(OdysseyPkiApplication.class, args);
@@ -1,5 +1,7 @@
 package com.example.odysseypki;
 
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.certificate.SerialNumberScheme;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -15,4 +17,66 @@ public class OdysseyPkiProperties {
     private String keyStorePass;
     @Value("${ODYSSEY_CREATE_KEYSTORE}")
     private boolean initializeKeyStore;
+    @Value("${ODYSSEY_COMMIT_DELAY_MS:200}")
+    private long commitDelayMillis;
+    @Value("${ODYSSEY_LOCK_STRIPES:256}")
+    private int lockStripes;
+    @Value("${ODYSSEY_ALIAS_TREE_PATH:src/main/resources/static/alias-tree.dat}")
+    private String aliasTreePath;
+    @Value("${ODYSSEY_ACL_PATH:src/main/resources/static/private-keys.acl}")
+    private String aclPath;
+    @Value("${ODYSSEY_ACL_SYNC_DELAY_MS:0}")
+    private long aclSyncDelayMillis;
+    @Value("${ODYSSEY_ACL_KDF_ITERATIONS:210000}")
+    private int aclKdfIterations;
+    @Value("${ODYSSEY_ACL_KEEP_LEGACY:false}")
+    private boolean aclKeepLegacy;
+    @Value("${ODYSSEY_KEY_POOL_SIZE:64}")
+    private int keyPoolSize;
+    @Value("${ODYSSEY_KEY_POOL_LOW_WATER_MARK:16}")
+    private int keyPoolLowWaterMark;
+    @Value("${ODYSSEY_KEY_POOL_WORKERS:0}")
+    private int keyPoolWorkers;
+    @Value("${ODYSSEY_KEY_ALGORITHM:RSA_2048}")
+    private KeyAlgorithm keyAlgorithm;
+    @Value("${ODYSSEY_SERIAL_NUMBER_SCHEME:RANDOM}")
+    private SerialNumberScheme serialNumberScheme;
+    @Value("${ODYSSEY_NODE_ID:0}")
+    private int nodeId;
+    @Value("${ODYSSEY_ISSUER_KEY_CACHE_SIZE:256}")
+    private int issuerKeyCacheSize;
+    @Value("${ODYSSEY_ISSUER_KEY_CACHE_TTL_MS:600000}")
+    private long issuerKeyCacheTtlMillis;
+    @Value("${ODYSSEY_DTO_CACHE_SIZE:100000}")
+    private int dtoCacheSize;
+    @Value("${ODYSSEY_PATH_CACHE_SIZE:10000}")
+    private int pathCacheSize;
+    @Value("${ODYSSEY_REQUEST_ISSUER_ALIAS:middle}")
+    private String requestIssuerAlias;
+    @Value("${ODYSSEY_REQUEST_VALIDITY_MS:31536000000}")
+    private long requestValidityMillis;
+    @Value("${ODYSSEY_ISSUANCE_WORKERS:4}")
+    private int issuanceWorkers;
+    @Value("${ODYSSEY_ISSUANCE_QUEUE_SIZE:1000}")
+    private int issuanceQueueSize;
+    @Value("${ODYSSEY_ISSUANCE_MAX_ATTEMPTS:3}")
+    private int issuanceMaxAttempts;
+    @Value("${ODYSSEY_ISSUANCE_RETRY_DELAY_MS:1000}")
+    private long issuanceRetryDelayMillis;
+    @Value("${ODYSSEY_EXPIRY_SCAN_INTERVAL_MS:60000}")
+    private long expiryScanIntervalMillis;
+    @Value("${ODYSSEY_RENEWAL_WINDOW_MS:2592000000}")
+    private long renewalWindowMillis;
+    @Value("${ODYSSEY_EXPIRY_BATCH_SIZE:500}")
+    private int expiryBatchSize;
+    @Value("${ODYSSEY_CRL_VALIDITY_MS:86400000}")
+    private long crlValidityMillis;
+    @Value("${ODYSSEY_DELTA_CRL_VALIDITY_MS:3600000}")
+    private long deltaCrlValidityMillis;
+    @Value("${ODYSSEY_CRL_DELTA_THRESHOLD:100}")
+    private int crlDeltaThreshold;
+    @Value("${ODYSSEY_OCSP_VALIDITY_MS:3600000}")
+    private long ocspValidityMillis;
+    @Value("${ODYSSEY_OCSP_CACHE_SIZE:100000}")
+    private int ocspCacheSize;
 }
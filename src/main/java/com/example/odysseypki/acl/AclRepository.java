@@ -1,49 +1,374 @@
 package com.example.odysseypki.acl;
 
 import com.example.odysseypki.OdysseyPkiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.security.InvalidKeyException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+// Append-only vault of private keys. The file starts with a header carrying the key derivation
+// salt, followed by records of two lines: the keyed hash of the alias and the AES-GCM encrypted
+// key bound to that hash. A hash followed by an empty line is a tombstone.
 @Component
 public class AclRepository {
-    public static final String PRIVATE_KEYS_ACL = "src/main/resources/static/private-keys.acl";
+    private static final Logger log = LoggerFactory.getLogger(AclRepository.class);
+    private static final String HEADER = "ODYSSEY-ACL-2";
 
     @Autowired
     private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Alias hash -> position of the encrypted key line, built once on startup
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "acl-syncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private VaultCipher cipher;
+    private FileChannel channel;
+    private long end;
+    // Completed by the next fsync, shared by every write appended since the last one was started
+    private CompletableFuture<Void> pendingSync;
+    private Timer loadTimer;
+
+    private record Entry(long offset, int length) {}
+
+    @PostConstruct
+    public void init() throws IOException, InvalidKeyException {
+        loadTimer = meterRegistry.timer("odyssey.acl.load");
+
+        var path = Paths.get(properties.getAclPath());
+        var salt = readSalt(path);
+        var legacy = salt == null;
+        if (legacy)
+            salt = VaultCipher.newSalt();
+
+        // Derived once, every record operation reuses the keys
+        cipher = VaultCipher.derive(properties.getSecret(), salt, properties.getAclKdfIterations());
+        if (legacy)
+            migrate(path, salt, decryptLegacy(readLegacyRecords(Files.exists(path) ? Files.readAllBytes(path) : new byte[0])));
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buildIndex();
+
+        var backup = legacyBackup(path);
+        if (Files.exists(backup) && !properties.isAclKeepLegacy())
+            removeLegacyBackup(backup);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        syncer.shutdownNow();
+        synchronized (this) {
+            channel.force(false);
+            channel.close();
+            if (pendingSync != null)
+                pendingSync.complete(null);
+            pendingSync = null;
+        }
+    }
+
+    public void save(String id, String password) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        saveAll(Map.of(id, password));
+    }
+
+    // Appends every record with a single write and returns once a batched fsync has covered it
+    public void saveAll(Map<String, String> passwords) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        if (passwords.isEmpty()) return;
 
-    public void save(String id, String password, String filepath) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
-        var encryptedPassword = AesEncryption.encrypt(password, properties.getSecret());
-        var encryptedId = AesEncryption.encrypt(id, properties.getSecret());
+        var out = new ByteArrayOutputStream();
+        var entries = new LinkedHashMap<String, Entry>();
 
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filepath), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            writer.write(encryptedId + "\n");
-            writer.write(encryptedPassword + "\n");
+        for (var password : passwords.entrySet()) {
+            var hash = cipher.hash(password.getKey());
+            entries.put(hash, write(out, hash, cipher.encrypt(password.getValue(), hash)));
         }
+
+        CompletableFuture<Void> sync;
+        synchronized (this) {
+            writeFully(ByteBuffer.wrap(out.toByteArray()), end);
+            for (var entry : entries.entrySet())
+                index.put(entry.getKey(), new Entry(end + entry.getValue().offset(), entry.getValue().length()));
+            end += out.size();
+            sync = scheduleSync();
+        }
+
+        awaitSync(sync);
     }
 
-    public String load(String id, String filepath) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
-        var encryptedId = AesEncryption.encrypt(id, properties.getSecret());
+    // Appends tombstones, an id followed by an empty line, which drop the ids from the index on startup
+    public void deleteAll(Collection<String> ids) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        var out = new ByteArrayOutputStream();
+        var deleted = new ArrayList<String>();
+
+        for (var id : ids) {
+            var hash = cipher.hash(id);
+            if (!index.containsKey(hash)) continue;
+            out.write((hash + "\n\n").getBytes(StandardCharsets.US_ASCII));
+            deleted.add(hash);
+        }
+        if (deleted.isEmpty()) return;
 
-        try (var reader = Files.newBufferedReader(Paths.get(filepath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(encryptedId)) {
-                    line = reader.readLine();
-                    if (line == null) throw new IOException("Invalid file format");
-                    return AesEncryption.decrypt(line, properties.getSecret());
-                }
-                reader.readLine();
+        CompletableFuture<Void> sync;
+        synchronized (this) {
+            writeFully(ByteBuffer.wrap(out.toByteArray()), end);
+            deleted.forEach(index::remove);
+            end += out.size();
+            sync = scheduleSync();
+        }
+
+        awaitSync(sync);
+    }
+
+    public String load(String id) throws IOException, IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        var hash = cipher.hash(id);
+        var entry = index.get(hash);
+        if (entry == null) return null;
+
+        var sample = Timer.start();
+        try {
+            var buffer = ByteBuffer.allocate(entry.length());
+            while (buffer.hasRemaining())
+                if (channel.read(buffer, entry.offset() + buffer.position()) < 0)
+                    throw new IOException("Invalid file format");
+
+            return cipher.decrypt(new String(buffer.array(), StandardCharsets.US_ASCII), hash);
+        } finally {
+            sample.stop(loadTimer);
+        }
+    }
+
+    // Records are indexed by their alias hash, nothing has to be decrypted on startup
+    private void buildIndex() throws IOException {
+        var content = ByteBuffer.allocate((int) channel.size());
+        while (content.hasRemaining())
+            if (channel.read(content, content.position()) < 0) break;
+
+        var bytes = content.array();
+        int position = lineEnd(bytes, 0) + 1;
+        while (position < bytes.length) {
+            var hashEnd = lineEnd(bytes, position);
+            var passwordEnd = hashEnd >= bytes.length ? bytes.length : lineEnd(bytes, hashEnd + 1);
+            if (passwordEnd >= bytes.length) {
+                truncate(position, bytes.length);
+                return;
             }
+
+            var hash = new String(bytes, position, hashEnd - position, StandardCharsets.US_ASCII);
+            if (passwordEnd == hashEnd + 1)
+                index.remove(hash);
+            else
+                index.put(hash, new Entry(hashEnd + 1, passwordEnd - hashEnd - 1));
+            position = passwordEnd + 1;
+        }
+        end = bytes.length;
+    }
+
+    // A record without its final newline was torn by a crash mid-append. Its write never returned,
+    // that only happens after the fsync covering it, so the file is cut back to the last complete record instead of refusing to start
+    private void truncate(int position, int size) throws IOException {
+        log.warn("Discarding {} bytes of an incomplete record at the end of {}", size - position, properties.getAclPath());
+        channel.truncate(position);
+        channel.force(false);
+        end = position;
+    }
+
+    private static byte[] readSalt(Path path) throws IOException {
+        if (!Files.exists(path))
+            return null;
+
+        try (var reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            var header = reader.readLine();
+            if (header == null || !header.startsWith(HEADER + " "))
+                return null;
+            return Base64.getDecoder().decode(header.substring(HEADER.length() + 1));
+        }
+    }
+
+    // Live records of the previous format as encrypted alias -> encrypted key. ECB encrypts the
+    // same alias to the same line, so tombstones are applied without decrypting anything.
+    private static Map<String, String> readLegacyRecords(byte[] bytes) {
+        var records = new LinkedHashMap<String, String>();
+
+        int position = 0;
+        while (position < bytes.length) {
+            var idEnd = lineEnd(bytes, position);
+            var passwordEnd = idEnd >= bytes.length ? bytes.length : lineEnd(bytes, idEnd + 1);
+            // An incomplete last record is dropped, its append never finished
+            if (passwordEnd >= bytes.length)
+                break;
+
+            var id = new String(bytes, position, idEnd - position, StandardCharsets.US_ASCII);
+            if (passwordEnd == idEnd + 1)
+                records.remove(id);
+            else
+                records.put(id, new String(bytes, idEnd + 1, passwordEnd - idEnd - 1, StandardCharsets.US_ASCII));
+            position = passwordEnd + 1;
+        }
+
+        return records;
+    }
+
+    // Every live record has to decrypt, a wrong or rotated secret must not migrate to an empty vault
+    private Map<String, String> decryptLegacy(Map<String, String> records) throws InvalidKeyException {
+        var passwords = new LinkedHashMap<String, String>();
+        for (var record : records.entrySet()) {
+            try {
+                passwords.put(AesEncryption.decrypt(record.getKey(), properties.getSecret()),
+                        AesEncryption.decrypt(record.getValue(), properties.getSecret()));
+            } catch (BadPaddingException | IllegalBlockSizeException e) {
+                throw new IllegalStateException("Legacy ACL record " + passwords.size()
+                        + " cannot be decrypted with ODYSSEY_SECRET, nothing was migrated.");
+            }
+        }
+        return passwords;
+    }
+
+    // Writes a fresh vault next to the old file and swaps it in, the old file is kept as a backup
+    private void migrate(Path path, byte[] salt, Map<String, String> passwords) throws IOException, InvalidKeyException {
+        var out = new ByteArrayOutputStream();
+        out.write((HEADER + " " + Base64.getEncoder().encodeToString(salt) + "\n").getBytes(StandardCharsets.US_ASCII));
+        try {
+            for (var password : passwords.entrySet()) {
+                var hash = cipher.hash(password.getKey());
+                write(out, hash, cipher.encrypt(password.getValue(), hash));
+            }
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new RuntimeException(e);
+        }
+
+        var target = path.toAbsolutePath();
+        var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, out.toByteArray());
+            try (var tempChannel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                tempChannel.force(true);
+            }
+            if (Files.exists(target) && Files.size(target) > 0)
+                Files.copy(target, legacyBackup(target), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // The backup holds every key in the old ECB format, so it only outlives the migration when
+    // ODYSSEY_ACL_KEEP_LEGACY is set. It is removed once every live record it holds, counted
+    // without decrypting, reads back from the vault, also when a previous start crashed between
+    // the migration and this check. A backup with nothing to verify is kept.
+    private void removeLegacyBackup(Path backup) throws IOException, InvalidKeyException {
+        var records = readLegacyRecords(Files.readAllBytes(backup));
+        var verified = 0;
+        for (var password : decryptLegacy(records).entrySet()) {
+            String migrated;
+            try {
+                migrated = load(password.getKey());
+            } catch (IllegalBlockSizeException | BadPaddingException e) {
+                migrated = null;
+            }
+            if (!password.getValue().equals(migrated))
+                throw new IllegalStateException("Migrated ACL does not match " + backup + ", the backup is kept.");
+            verified++;
+        }
+
+        if (verified == 0 || verified != records.size()) {
+            log.warn("Verified {} of {} records of {}, the backup is kept", verified, records.size(), backup);
+            return;
+        }
+        Files.delete(backup);
+    }
+
+    private static Path legacyBackup(Path path) {
+        var target = path.toAbsolutePath();
+        return target.resolveSibling(target.getFileName() + ".legacy");
+    }
+
+    // Record offsets are relative to the start of the given stream
+    private static Entry write(ByteArrayOutputStream out, String hash, String encrypted) throws IOException {
+        var passwordLine = (encrypted + "\n").getBytes(StandardCharsets.US_ASCII);
+        out.write((hash + "\n").getBytes(StandardCharsets.US_ASCII));
+        var entry = new Entry(out.size(), passwordLine.length - 1);
+        out.write(passwordLine);
+        return entry;
+    }
+
+    private static int lineEnd(byte[] bytes, int from) {
+        var i = from;
+        while (i < bytes.length && bytes[i] != '\n') i++;
+        return i;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    // Group commit: writers appended while an fsync is pending join it, writers arriving while it
+    // runs start the next one, so concurrent appends share fsyncs and each still waits for its own
+    private CompletableFuture<Void> scheduleSync() {
+        if (pendingSync != null)
+            return pendingSync;
+
+        var sync = new CompletableFuture<Void>();
+        pendingSync = sync;
+        syncer.schedule(() -> {
+            synchronized (this) {
+                if (pendingSync == sync)
+                    pendingSync = null;
+            }
+            IOException failure = null;
+            var sample = Timer.start();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+            sample.stop(meterRegistry.timer("odyssey.acl.sync"));
+
+            if (failure == null)
+                sync.complete(null);
+            else
+                sync.completeExceptionally(failure);
+        }, properties.getAclSyncDelayMillis(), TimeUnit.MILLISECONDS);
+        return sync;
+    }
+
+    private static void awaitSync(CompletableFuture<Void> sync) throws IOException {
+        try {
+            sync.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the ACL to be synced.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
         }
-        return null;
     }
 }
@@ -7,6 +7,8 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 
+// AES/ECB with a key hashed from the secret. Nothing is encrypted with it anymore, it only
+// reads ACL files and JpaCertificateStore key blobs of the previous format.
 public class AesEncryption {
     private static final String ALGORITHM = "AES";
     private static final Integer KEY_SIZE = 32;
@@ -0,0 +1,123 @@
+package com.example.odysseypki.acl;
+
+import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+// AES-GCM with a random nonce per record and an HMAC-SHA256 of the alias used as the
+// lookup key. Both keys are derived from the secret once, ciphers and MACs are kept per thread.
+public class VaultCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKey encryptionKey;
+    private final SecretKey macKey;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(VaultCipher::createCipher);
+    private final ThreadLocal<Mac> macs;
+
+    private VaultCipher(byte[] keyMaterial) {
+        encryptionKey = new SecretKeySpec(keyMaterial, 0, KEY_SIZE, "AES");
+        macKey = new SecretKeySpec(keyMaterial, KEY_SIZE, KEY_SIZE, MAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(this::createMac);
+    }
+
+    public static VaultCipher derive(String secret, byte[] salt, int iterations) {
+        var spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, 2 * KEY_SIZE * 8);
+        try {
+            var keyMaterial = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            try {
+                return new VaultCipher(keyMaterial);
+            } finally {
+                Arrays.fill(keyMaterial, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public static byte[] newSalt() {
+        var salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    // Keyed hash of an alias, equal aliases give equal hashes but they cannot be reversed without the key
+    public String hash(String alias) {
+        var mac = macs.get();
+        return Base64.getEncoder().encodeToString(mac.doFinal(alias.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Base64 of nonce followed by ciphertext and tag, associated data is authenticated but not stored
+    public String encrypt(String data, String associatedData) throws IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        var nonce = new byte[NONCE_SIZE];
+        RANDOM.nextBytes(nonce);
+
+        var cipher = ciphers.get();
+        init(cipher, Cipher.ENCRYPT_MODE, nonce);
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.US_ASCII));
+        var plaintext = data.getBytes(StandardCharsets.UTF_8);
+
+        var out = ByteBuffer.allocate(NONCE_SIZE + cipher.getOutputSize(plaintext.length));
+        out.put(nonce);
+        try {
+            cipher.doFinal(ByteBuffer.wrap(plaintext), out);
+        } catch (ShortBufferException e) {
+            throw new RuntimeException(e);
+        }
+        return Base64.getEncoder().encodeToString(out.array());
+    }
+
+    public String decrypt(String encrypted, String associatedData) throws IllegalBlockSizeException, BadPaddingException, InvalidKeyException {
+        var decoded = Base64.getDecoder().decode(encrypted);
+        if (decoded.length < NONCE_SIZE + TAG_BITS / 8)
+            throw new IllegalBlockSizeException("Record is too short");
+
+        var cipher = ciphers.get();
+        init(cipher, Cipher.DECRYPT_MODE, Arrays.copyOf(decoded, NONCE_SIZE));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.US_ASCII));
+        var decrypted = cipher.doFinal(decoded, NONCE_SIZE, decoded.length - NONCE_SIZE);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    private void init(Cipher cipher, int mode, byte[] nonce) throws InvalidKeyException {
+        try {
+            cipher.init(mode, encryptionKey, new GCMParameterSpec(TAG_BITS, nonce));
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
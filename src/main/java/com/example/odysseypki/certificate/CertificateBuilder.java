@@ -12,19 +12,29 @@ import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.PKCSException;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequest;
 
 import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @NoArgsConstructor
 public class CertificateBuilder {
+    private static final SerialNumberGenerator DEFAULT_SERIAL_NUMBER_GENERATOR = new RandomSerialNumberGenerator();
+    private static final Map<KeyAlgorithm, JcaContentSignerBuilder> SIGNER_BUILDERS = new ConcurrentHashMap<>();
+
     private Subject subject = null;
     private Issuer issuer = null;
     private Date startDate = null, endDate = null;
     private BigInteger serialNumber = null;
+    private SerialNumberGenerator serialNumberGenerator = DEFAULT_SERIAL_NUMBER_GENERATOR;
     private String alias = null;
     private PrivateKey privateKey = null;
     private Boolean isRoot = false, isCa = false, isHttps = false;
@@ -35,7 +45,7 @@ public class CertificateBuilder {
         if (subject == null || issuer == null || endDate == null)
             throw new IllegalArgumentException("Missing required fields");
         if (startDate == null) startDate = new Date();
-        if (serialNumber == null) serialNumber = generateSerialNumber();
+        if (serialNumber == null) serialNumber = serialNumberGenerator.next();
         if (alias == null) alias = serialNumber.toString();
         if (!isHttps) privateKey = issuer.getPrivateKey();
 
@@ -49,8 +59,8 @@ public class CertificateBuilder {
         // ADDING EXTENSIONS
         buildExtensions(builder);
 
-        var signer = new JcaContentSignerBuilder("SHA256WithRSAEncryption")
-                .setProvider("BC").build(issuer.getPrivateKey());
+        var signer = getSignerBuilder(KeyAlgorithm.of(issuer.getPrivateKey()))
+                .build(issuer.getPrivateKey());
         var x509Certificate = new JcaX509CertificateConverter().setProvider("BC")
                 .getCertificate(builder.build(signer));
 
@@ -62,8 +72,10 @@ public class CertificateBuilder {
         );
     }
 
-    private BigInteger generateSerialNumber() {
-        return BigInteger.valueOf(System.currentTimeMillis());
+    // Signer builders are stateless once configured, so one per algorithm is shared
+    public static JcaContentSignerBuilder getSignerBuilder(KeyAlgorithm algorithm) {
+        return SIGNER_BUILDERS.computeIfAbsent(algorithm,
+                a -> new JcaContentSignerBuilder(a.getSignatureAlgorithm()).setProvider("BC"));
     }
 
     public CertificateBuilder withSubject(PublicKey key, X500Name x500Name) {
@@ -71,6 +83,28 @@ public class CertificateBuilder {
         return this;
     }
 
+    // Only the key is taken from the request, the subject keeps its private key. The requested
+    // name is ignored, the certificate carries the name that was approved.
+    public CertificateBuilder withCertificationRequest(PKCS10CertificationRequest request, X500Name x500Name) throws GeneralSecurityException, OperatorCreationException {
+        var verified = verifyCertificationRequest(request);
+        subject = new Subject(verified.getPublicKey(), x500Name);
+        return this;
+    }
+
+    // Proof of possession, the request has to be signed with the key it carries
+    public static JcaPKCS10CertificationRequest verifyCertificationRequest(PKCS10CertificationRequest request) throws OperatorCreationException {
+        var jcaRequest = new JcaPKCS10CertificationRequest(request).setProvider("BC");
+        try {
+            var verifier = new JcaContentVerifierProviderBuilder().setProvider("BC")
+                    .build(request.getSubjectPublicKeyInfo());
+            if (!request.isSignatureValid(verifier))
+                throw new IllegalArgumentException("Certification request signature is not valid.");
+        } catch (PKCSException e) {
+            throw new IllegalArgumentException("Certification request signature is not valid.");
+        }
+        return jcaRequest;
+    }
+
     public CertificateBuilder withIssuer(PrivateKey privateKey, PublicKey publicKey, X500Name x500Name) {
         issuer = new Issuer(privateKey, publicKey, x500Name);
         return this;
@@ -92,6 +126,11 @@ public class CertificateBuilder {
         return this;
     }
 
+    public CertificateBuilder withSerialNumberGenerator(SerialNumberGenerator serialNumberGenerator) {
+        this.serialNumberGenerator = serialNumberGenerator;
+        return this;
+    }
+
     public CertificateBuilder withAlias(String alias) {
         this.alias = alias;
         return this;
@@ -1,105 +1,125 @@
 package com.example.odysseypki.certificate;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.function.Consumer;
 
-@Getter
-@Setter
-@AllArgsConstructor
 public class CertificateTree implements Serializable {
     @Serial
     private static final long serialVersionUID = 81723617236L;
+    private static final int FORMAT_MAGIC = 0x4F504B54; // "OPKT"
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_ALIAS_LENGTH = 0xFFFF;
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final int HEADER_SIZE = Integer.BYTES + 1 + Integer.BYTES;
+    private static final int RECORD_MIN_SIZE = Integer.BYTES + Short.BYTES;
 
+    @Getter
     private CertificateNode root;
 
+    // Alias -> node, rebuilt on deserialization and kept in sync on every mutation
+    private transient Map<String, CertificateNode> index = new HashMap<>();
+
+    public CertificateTree(CertificateNode root) {
+        setRoot(root);
+    }
+
+    public void setRoot(CertificateNode root) {
+        this.root = root;
+        rebuildIndex();
+    }
+
     public List<String> getAllAliases() {
         var aliases = new ArrayList<String>();
         dipTraverse(root, node -> aliases.add(node.getAlias()));
         return aliases;
     }
 
-    public String findParentAlias(String alias) {
-        var parent = new AtomicReference<String>();
+    public List<String> getSubtreeAliases(String alias) {
+        var node = index.get(alias);
+        return node == null ? new ArrayList<>() : scanSubtree(node);
+    }
 
-        dipTraverse(root, node -> {
-            if (node != null && node.getAlias().equals(alias) && node.getParent() != null)
-                parent.set(node.getParent().getAlias());
-        });
+    public boolean contains(String alias) {
+        return index.containsKey(alias);
+    }
 
-        return parent.get();
+    public boolean hasChildren(String alias) {
+        var node = index.get(alias);
+        return node != null && !node.getChildren().isEmpty();
     }
 
-    private void addAlias(String parentAlias, String newAlias, CertificateNode currentNode) {
-        if(parentAlias.equals(currentNode.getAlias())) {
-            CertificateNode childNode = new CertificateNode(newAlias, currentNode);
-            currentNode.addChild(childNode);
+    public String findParentAlias(String alias) {
+        var node = index.get(alias);
+        if (node == null || node.getParent() == null)
+            return null;
 
-        } else {
-            for(CertificateNode childNode : currentNode.getChildren()) {
-                addAlias(parentAlias, newAlias, childNode);
-            }
-        }
+        return node.getParent().getAlias();
     }
 
     public void addAlias(String parentAlias, String newAlias) {
-        addAlias(parentAlias, newAlias, root);
+        var parent = index.get(parentAlias);
+        if (parent == null)
+            return;
+
+        var childNode = new CertificateNode(newAlias, parent);
+        parent.addChild(childNode);
+        index.put(newAlias, childNode);
     }
 
     public static CertificateTree createTree(String rootAlias) {
         return new CertificateTree(new CertificateNode(rootAlias));
     }
 
-    public List<String> removeAlias(String toBeRemoved){
-        if (root == null) {
-            return new ArrayList<>();
-        }
-        else if (root.getAlias().equals(toBeRemoved)){
-            List<String> deletedCertificates = new ArrayList<>();
-            if (root.getChildren() != null) {
-                for (CertificateNode childNode : root.getChildren()) {
-                    deletedCertificates.addAll(scanSubtree(childNode));
-                }
+    // Independent copy, written out while the original keeps changing
+    public CertificateTree copy() {
+        if (root == null)
+            return new CertificateTree(null);
+
+        var copy = createTree(root.getAlias());
+        var queue = new ArrayDeque<CertificateNode>(List.of(root));
+        while (!queue.isEmpty()) {
+            var node = queue.poll();
+            for (var child : node.getChildren()) {
+                copy.addAlias(node.getAlias(), child.getAlias());
+                queue.add(child);
             }
-            this.root = null;
-            return deletedCertificates;
-        }
-        else {
-            return removeAlias(toBeRemoved, this.root);
         }
+        return copy;
     }
-    private List<String> removeAlias(String toBeRemoved, CertificateNode currentNode){
 
-        if(currentNode.getAlias().equals(toBeRemoved)){
-            CertificateNode parent = currentNode.getParent();
-            if(parent==null) {
-                this.root = null;
-                return scanSubtree(currentNode);
-            }
-            parent.removeChild(currentNode);
-            return scanSubtree(currentNode);
-        }
+    public List<String> removeAlias(String toBeRemoved) {
+        var node = index.get(toBeRemoved);
+        if (node == null)
+            return new ArrayList<>();
+
+        if (node == root) {
+            List<String> deletedCertificates = new ArrayList<>();
+            for (CertificateNode childNode : root.getChildren())
+                deletedCertificates.addAll(scanSubtree(childNode));
 
-        for(CertificateNode childNode : currentNode.getChildren()){
-            var returns = removeAlias(toBeRemoved, childNode);
-            if(returns!=null)
-                return returns;
+            setRoot(null);
+            return deletedCertificates;
         }
-        return null;
+
+        node.getParent().removeChild(node);
+        var deletedCertificates = scanSubtree(node);
+        deletedCertificates.forEach(index::remove);
+        return deletedCertificates;
     }
 
-    private List<String> scanSubtree(CertificateNode node){
+    private List<String> scanSubtree(CertificateNode node) {
         List<String> deletedCertificates = new ArrayList<>();
-        deletedCertificates.add(node.getAlias());
-        for(CertificateNode childNode : node.getChildren()){
-            deletedCertificates.addAll(scanSubtree(childNode));
-        }
+        dipTraverse(node, n -> deletedCertificates.add(n.getAlias()));
         return deletedCertificates;
     }
 
@@ -112,16 +132,29 @@ public class CertificateTree implements Serializable {
         }
     }
 
-    // Generic tree traversal with function to be performed on each node
-    // Can be used for deletion and printing (if depth is added to the CertificateNode)
+    // Generic pre-order tree traversal with function to be performed on each node
+    // Iterative so deep chains cannot overflow the stack
     private void dipTraverse(CertificateNode node, Consumer<CertificateNode> consumer) {
-        consumer.accept(node);
-
-        if (node == null || node.getChildren() == null)
+        if (node == null)
             return;
 
-        for (CertificateNode child : node.getChildren())
-            dipTraverse(child, consumer);
+        var stack = new ArrayDeque<CertificateNode>();
+        stack.push(node);
+
+        while (!stack.isEmpty()) {
+            var current = stack.pop();
+            consumer.accept(current);
+
+            var children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; --i)
+                stack.push(children.get(i));
+        }
+    }
+
+    private void rebuildIndex() {
+        var rebuilt = new HashMap<String, CertificateNode>();
+        dipTraverse(root, node -> rebuilt.put(node.getAlias(), node));
+        index = rebuilt;
     }
 
     private void printNode(CertificateNode node, int depth) {
@@ -132,18 +165,136 @@ public class CertificateTree implements Serializable {
             printNode(child, depth + 1);
     }
 
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        rebuildIndex();
+    }
+
+    // Compact format: header, node count, then pre-order records of
+    // (parent index, alias length, UTF-8 alias), parent index -1 marks the root
     public void serialize(String fileName) throws IOException {
-        File file = new File(fileName);
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(this);
+        var nodes = new ArrayList<CertificateNode>();
+        dipTraverse(root, nodes::add);
+
+        var positions = new HashMap<CertificateNode, Integer>(nodes.size() * 2);
+        var target = Paths.get(fileName).toAbsolutePath();
+        var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                buffer.putInt(FORMAT_MAGIC).put(FORMAT_VERSION).putInt(nodes.size());
+
+                for (int i = 0; i < nodes.size(); ++i) {
+                    var node = nodes.get(i);
+                    var alias = node.getAlias().getBytes(StandardCharsets.UTF_8);
+                    if (alias.length > MAX_ALIAS_LENGTH)
+                        throw new IllegalArgumentException("Alias is too long: " + node.getAlias());
+
+                    positions.put(node, i);
+                    if (buffer.remaining() < Integer.BYTES + Short.BYTES + alias.length)
+                        drain(channel, buffer);
+
+                    buffer.putInt(node.getParent() == null ? -1 : positions.get(node.getParent()))
+                            .putShort((short) alias.length)
+                            .put(alias);
+                }
+                drain(channel, buffer);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
     public static CertificateTree deserialize(String fileName) throws IOException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName))) {
+        if (isLegacyFormat(fileName))
+            return deserializeLegacy(fileName);
+
+        try (var channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+            fill(channel, buffer, HEADER_SIZE);
+            if (buffer.getInt() != FORMAT_MAGIC || buffer.get() != FORMAT_VERSION)
+                throw new IOException("Invalid alias tree format");
+
+            // Every record takes at least a parent index and a length, so a corrupt count cannot
+            // make the reader allocate more than the file could hold
+            var count = buffer.getInt();
+            if (count < 0 || count > (channel.size() - HEADER_SIZE) / RECORD_MIN_SIZE)
+                throw new IOException("Invalid alias tree format");
+            var nodes = new ArrayList<CertificateNode>(count);
+            CertificateNode root = null;
+
+            for (int i = 0; i < count; ++i) {
+                fill(channel, buffer, Integer.BYTES + Short.BYTES);
+                var parentIndex = buffer.getInt();
+                var length = Short.toUnsignedInt(buffer.getShort());
+
+                fill(channel, buffer, length);
+                var alias = new byte[length];
+                buffer.get(alias);
+
+                if (parentIndex < 0) {
+                    if (i != 0)
+                        throw new IOException("Invalid alias tree format");
+                    root = new CertificateNode(new String(alias, StandardCharsets.UTF_8));
+                    nodes.add(root);
+                    continue;
+                }
+
+                if (i == 0 || parentIndex >= i)
+                    throw new IOException("Invalid alias tree format");
+
+                var parent = nodes.get(parentIndex);
+                var node = new CertificateNode(new String(alias, StandardCharsets.UTF_8), parent);
+                parent.addChild(node);
+                nodes.add(node);
+            }
+
+            return new CertificateTree(root);
+        }
+    }
+
+    // One-time conversion of a tree written with Java object serialization
+    public static boolean migrate(String fileName) throws IOException {
+        if (!isLegacyFormat(fileName))
+            return false;
+
+        deserializeLegacy(fileName).serialize(fileName);
+        return true;
+    }
+
+    private static boolean isLegacyFormat(String fileName) throws IOException {
+        try (var in = new DataInputStream(new FileInputStream(fileName))) {
+            return in.available() >= Short.BYTES && in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+        }
+    }
+
+    private static CertificateTree deserializeLegacy(String fileName) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
             return (CertificateTree) ois.readObject();
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        if (buffer.remaining() >= required)
+            return;
+
+        buffer.compact();
+        while (buffer.position() < required)
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of alias tree");
+        buffer.flip();
+    }
 }
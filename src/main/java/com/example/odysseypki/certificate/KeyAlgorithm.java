@@ -0,0 +1,103 @@
+package com.example.odysseypki.certificate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.*;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public enum KeyAlgorithm {
+    RSA_2048("RSA", null, 2048),
+    EC_P256("EC", "secp256r1", 256),
+    EC_P384("EC", "secp384r1", 384),
+    ED25519("Ed25519", null, 255);
+
+    private final String algorithm;
+    private final String curve;
+    private final int keySize;
+
+    // Domain parameters of the supported named curves, keys are matched on these and not on the field size
+    private static final Map<KeyAlgorithm, ECParameterSpec> CURVE_PARAMETERS = new EnumMap<>(KeyAlgorithm.class);
+
+    static {
+        try {
+            for (var keyAlgorithm : List.of(EC_P256, EC_P384)) {
+                var parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(keyAlgorithm.curve));
+                CURVE_PARAMETERS.put(keyAlgorithm, parameters.getParameterSpec(ECParameterSpec.class));
+            }
+        } catch (NoSuchAlgorithmException | InvalidParameterSpecException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public KeyPair generate() {
+        try {
+            switch (this) {
+                case RSA_2048: {
+                    var keyGen = KeyPairGenerator.getInstance(algorithm);
+                    var random = SecureRandom.getInstance("SHA1PRNG", "SUN");
+                    keyGen.initialize(keySize, random);
+                    return keyGen.generateKeyPair();
+                }
+                case EC_P256:
+                case EC_P384: {
+                    var keyGen = KeyPairGenerator.getInstance(algorithm, "BC");
+                    keyGen.initialize(new ECGenParameterSpec(curve));
+                    return keyGen.generateKeyPair();
+                }
+                default:
+                    return KeyPairGenerator.getInstance(algorithm, "BC").generateKeyPair();
+            }
+        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidAlgorithmParameterException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Signature algorithm used when a key of this type signs a certificate
+    public String getSignatureAlgorithm() {
+        switch (this) {
+            case RSA_2048: return "SHA256WithRSAEncryption";
+            case EC_P256: return "SHA256WithECDSA";
+            case EC_P384: return "SHA384WithECDSA";
+            default: return "Ed25519";
+        }
+    }
+
+    public static KeyAlgorithm of(Key key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                if (((RSAKey) key).getModulus().bitLength() < RSA_2048.keySize)
+                    throw new IllegalArgumentException("RSA keys must be at least " + RSA_2048.keySize + " bits.");
+                return RSA_2048;
+            case "EC":
+            case "ECDSA":
+                var params = ((ECKey) key).getParams();
+                for (var entry : CURVE_PARAMETERS.entrySet())
+                    if (sameCurve(params, entry.getValue()))
+                        return entry.getKey();
+                throw new IllegalArgumentException("Unsupported elliptic curve, only secp256r1 and secp384r1 keys are accepted.");
+            case "Ed25519":
+            case "EdDSA":
+                return ED25519;
+            default:
+                throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+        }
+    }
+
+    private static boolean sameCurve(ECParameterSpec a, ECParameterSpec b) {
+        return a.getCurve().equals(b.getCurve())
+                && a.getGenerator().equals(b.getGenerator())
+                && a.getOrder().equals(b.getOrder())
+                && a.getCofactor() == b.getCofactor();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.odysseypki.certificate;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Node ID in the bits above a 64-bit sequence. The sequence starts from the clock in
+// microseconds, so it keeps increasing across restarts unless a node averages more than
+// a million issuances per second.
+public class NodeSequenceSerialNumberGenerator implements SerialNumberGenerator {
+    public static final int MAX_NODE_ID = 0xFFFF;
+
+    private final BigInteger node;
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    public NodeSequenceSerialNumberGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        node = BigInteger.valueOf(nodeId).shiftLeft(Long.SIZE);
+    }
+
+    @Override
+    public BigInteger next() {
+        var next = sequence.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis() * 1000));
+        return node.or(BigInteger.valueOf(next));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.odysseypki.certificate;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+// Positive 127-bit random serial numbers (RFC 5280 allows up to 20 octets), collisions
+// are negligible without any coordination between threads or nodes
+public class RandomSerialNumberGenerator implements SerialNumberGenerator {
+    private static final int BITS = 127;
+
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    @Override
+    public BigInteger next() {
+        BigInteger serialNumber;
+        do {
+            serialNumber = new BigInteger(BITS, random.get());
+        } while (serialNumber.signum() == 0);
+        return serialNumber;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.odysseypki.certificate;
+
+import java.math.BigInteger;
+
+// Source of certificate serial numbers, which also serve as default aliases, so they must never repeat
+public interface SerialNumberGenerator {
+    BigInteger next();
+}
@@ -0,0 +1,13 @@
+package com.example.odysseypki.certificate;
+
+public enum SerialNumberScheme {
+    RANDOM,
+    NODE_SEQUENCE;
+
+    public SerialNumberGenerator create(int nodeId) {
+        return switch (this) {
+            case RANDOM -> new RandomSerialNumberGenerator();
+            case NODE_SEQUENCE -> new NodeSequenceSerialNumberGenerator(nodeId);
+        };
+    }
+}
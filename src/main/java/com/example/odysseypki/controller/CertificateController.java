@@ -1,17 +1,27 @@
 package com.example.odysseypki.controller;
 
+import com.example.odysseypki.dto.BatchIssuanceResultDTO;
 import com.example.odysseypki.dto.CertificateCreationDTO;
 import com.example.odysseypki.dto.CertificateDTO;
+import com.example.odysseypki.dto.CertificatePageDTO;
 import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.service.CertificateDTOCache;
+import com.example.odysseypki.service.CertificateFilter;
 import com.example.odysseypki.service.CertificateService;
+import com.example.odysseypki.service.ExpiryService;
+import com.example.odysseypki.service.RevocationService;
 import com.example.odysseypki.service.X500NameFormatter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
@@ -21,8 +31,16 @@ import java.util.*;
 @RestController
 @RequestMapping(value = "/api/v1/certificates")
 public class CertificateController {
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private CertificateService service;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CertificateDTOCache dtoCache;
+    @Autowired
+    private ExpiryService expiryService;
 
     @GetMapping
     public ResponseEntity<?> findAll() throws GeneralSecurityException, IOException {
@@ -34,6 +52,96 @@ public class CertificateController {
         return new ResponseEntity<>(certificates, HttpStatus.OK);
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<?> findPage(@RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "50") int limit,
+                                      @RequestParam(required = false) String issuerAlias,
+                                      @RequestParam(required = false) Long validFrom,
+                                      @RequestParam(required = false) Long validTo,
+                                      @RequestParam(required = false) Boolean isCa,
+                                      @RequestParam(required = false) String keyUsage,
+                                      @RequestParam(defaultValue = "false") boolean compact) throws GeneralSecurityException, IOException {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        var filter = createFilter(issuerAlias, validFrom, validTo, isCa, keyUsage);
+        var page = service.findPage(filter, cursor, limit + 1);
+        var certificates = new ArrayList<CertificateDTO>();
+        String nextCursor = null;
+
+        for (var entry : page.entrySet()) {
+            if (certificates.size() == limit) {
+                nextCursor = certificates.get(limit - 1).getAlias();
+                break;
+            }
+            certificates.add(mapCertificateToDTO(entry.getKey(), entry.getValue(), compact));
+        }
+
+        return new ResponseEntity<>(new CertificatePageDTO(certificates, nextCursor), HttpStatus.OK);
+    }
+
+    // Writes certificates to the response one by one instead of materializing the whole list
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String issuerAlias,
+                                                        @RequestParam(required = false) Long validFrom,
+                                                        @RequestParam(required = false) Long validTo,
+                                                        @RequestParam(required = false) Boolean isCa,
+                                                        @RequestParam(required = false) String keyUsage,
+                                                        @RequestParam(defaultValue = "false") boolean compact) {
+        var filter = createFilter(issuerAlias, validFrom, validTo, isCa, keyUsage);
+
+        StreamingResponseBody body = out -> {
+            try (var generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                service.forEach(filter, null, (alias, certificate) -> {
+                    generator.writeObject(mapCertificateToDTO(alias, certificate, compact));
+                    return true;
+                });
+                generator.writeEndArray();
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/expiring")
+    public ResponseEntity<?> findExpiring(@RequestParam long withinMillis,
+                                         @RequestParam(defaultValue = "50") int limit,
+                                         @RequestParam(defaultValue = "false") boolean compact) throws GeneralSecurityException, IOException {
+        if (withinMillis < 0 || limit < 1 || limit > MAX_PAGE_SIZE)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        var certificates = new ArrayList<CertificateDTO>();
+        for (var entry : service.findExpiring(withinMillis, limit).entrySet())
+            certificates.add(mapCertificateToDTO(entry.getKey(), entry.getValue(), compact));
+
+        return new ResponseEntity<>(certificates, HttpStatus.OK);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam(required = false) String commonName,
+                                    @RequestParam(required = false) String email,
+                                    @RequestParam(required = false) BigInteger serialNumber) throws GeneralSecurityException, IOException {
+        Map<String, X509Certificate> found;
+
+        if (serialNumber != null)
+            found = service.findBySerialNumber(serialNumber);
+        else if (commonName != null)
+            found = service.findByCommonName(commonName);
+        else if (email != null)
+            found = service.findByEmail(email);
+        else
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        var certificates = new ArrayList<CertificateDTO>();
+        for (var entry : found.entrySet())
+            certificates.add(mapCertificateToDTO(entry.getKey(), entry.getValue()));
+
+        return new ResponseEntity<>(certificates, HttpStatus.OK);
+    }
+
     @GetMapping("/{alias}")
     public ResponseEntity<?> findByAlias(@PathVariable String alias) throws GeneralSecurityException, IOException {
         var certificate = service.find(alias);
@@ -84,17 +192,85 @@ public class CertificateController {
         return new ResponseEntity<>(mapCertificateToDTO(created.getAlias(), created.getX509Certificate()), HttpStatus.CREATED);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<?> createBatch(@RequestBody List<CertificateCreationDTO> dtos) throws GeneralSecurityException,
+            IOException {
+
+        var results = new ArrayList<BatchIssuanceResultDTO>();
+
+        for (var result : service.createBatch(dtos)) {
+            var created = result.getCertificate();
+            results.add(new BatchIssuanceResultDTO(
+                    result.getIndex(),
+                    created == null ? null : mapCertificateToDTO(created.getAlias(), created.getX509Certificate()),
+                    result.getError()));
+        }
+
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @PostMapping("/{alias}/revoke")
+    public ResponseEntity<?> revoke(@PathVariable String alias, @RequestParam(defaultValue = "0") int reason) throws IOException, GeneralSecurityException {
+        if (!RevocationService.isValidReason(reason))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        var revocation = service.revoke(alias, reason);
+        return new ResponseEntity<>(revocation, HttpStatus.OK);
+    }
+
+    @PutMapping("/{alias}/renewal")
+    public ResponseEntity<?> flagForRenewal(@PathVariable String alias, @RequestParam(defaultValue = "true") boolean enabled) throws IOException, GeneralSecurityException {
+        expiryService.flagForRenewal(alias, enabled);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @PostMapping("/{alias}/renew")
+    public ResponseEntity<?> renew(@PathVariable String alias) throws IOException, GeneralSecurityException, OperatorCreationException {
+        var renewed = service.renew(alias);
+        if (renewed == null)
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+
+        return new ResponseEntity<>(mapCertificateToDTO(renewed.getAlias(), renewed.getX509Certificate()), HttpStatus.CREATED);
+    }
+
     @DeleteMapping("/{alias}")
     public ResponseEntity<?> deleteByAlias(@PathVariable String alias) throws IOException, GeneralSecurityException {
         var certificates = new ArrayList<CertificateDTO>();
 
-        for (var certificate : service.delete(alias))
-            certificates.add(mapCertificateToDTO(alias, certificate));
+        // Deleted certificates are mapped without going through the cache they were just evicted from
+        for (var entry : service.delete(alias).entrySet())
+            certificates.add(toDTO(entry.getKey(), entry.getValue()));
 
         return new ResponseEntity<>(certificates, HttpStatus.OK);
     }
 
+    private static CertificateFilter createFilter(String issuerAlias, Long validFrom, Long validTo, Boolean isCa, String keyUsage) {
+        return new CertificateFilter(
+                issuerAlias,
+                validFrom == null ? null : new Date(validFrom),
+                validTo == null ? null : new Date(validTo),
+                isCa,
+                keyUsage == null ? null : Certificate.KeyUsageValue.valueOf(keyUsage));
+    }
+
+    // Compact DTOs leave out the public key and signature bytes, cached DTOs are shared so a copy is returned
+    private CertificateDTO mapCertificateToDTO(String alias, X509Certificate certificate, boolean compact) throws IOException, CertificateEncodingException {
+        var dto = mapCertificateToDTO(alias, certificate);
+        if (!compact)
+            return dto;
+
+        return new CertificateDTO(
+                dto.getAlias(), dto.getParentAlias(),
+                dto.getIssuer(), dto.getSubject(),
+                dto.getValidity(), null,
+                dto.getExtensions(), null);
+    }
+
     private CertificateDTO mapCertificateToDTO(String alias, X509Certificate certificate) throws IOException, CertificateEncodingException {
+        return dtoCache.get(alias, certificate, this::toDTO);
+    }
+
+    private CertificateDTO toDTO(String alias, X509Certificate certificate) throws IOException, CertificateEncodingException {
         return new CertificateDTO(
                 alias,
                 service.findParentAlias(alias),
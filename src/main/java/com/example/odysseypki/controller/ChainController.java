@@ -0,0 +1,62 @@
+package com.example.odysseypki.controller;
+
+import com.example.odysseypki.dto.ChainValidationDTO;
+import com.example.odysseypki.service.ChainService;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+
+@CrossOrigin("https://localhost:4200")
+@RestController
+@RequestMapping(value = "/api/v1/certificates")
+public class ChainController {
+    private static final MediaType PEM = MediaType.parseMediaType("application/pem-certificate-chain");
+    private static final MediaType PKCS7 = MediaType.parseMediaType("application/pkcs7-mime");
+
+    @Autowired
+    private ChainService service;
+
+    // Whole chain in one response, leaf first, as PEM or as a degenerate PKCS#7 bundle
+    @GetMapping("/{alias}/chain")
+    public ResponseEntity<byte[]> findChain(@PathVariable String alias,
+                                            @RequestParam(defaultValue = "pem") String format) throws GeneralSecurityException, IOException {
+        var chain = service.findChain(alias);
+        if (chain == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        switch (format) {
+            case "pem": {
+                var out = new StringWriter();
+                try (var writer = new JcaPEMWriter(out)) {
+                    for (var certificate : chain)
+                        writer.writeObject(certificate);
+                }
+                return ResponseEntity.ok().contentType(PEM).body(out.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+            case "pkcs7": {
+                var path = CertificateFactory.getInstance("X.509").generateCertPath(chain);
+                return ResponseEntity.ok().contentType(PKCS7).body(path.getEncoded("PKCS7"));
+            }
+            default:
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/{alias}/validation")
+    public ResponseEntity<?> validate(@PathVariable String alias) throws GeneralSecurityException, IOException {
+        var problems = service.validate(alias);
+        if (problems == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        return new ResponseEntity<>(new ChainValidationDTO(alias, problems.isEmpty(), problems), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.odysseypki.controller;
+
+import com.example.odysseypki.service.RevocationService;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+@CrossOrigin("https://localhost:4200")
+@RestController
+@RequestMapping(value = "/api/v1/crl")
+public class CrlController {
+    private static final MediaType PKIX_CRL = MediaType.parseMediaType("application/pkix-crl");
+
+    @Autowired
+    private RevocationService service;
+
+    @GetMapping("/{alias}")
+    public ResponseEntity<byte[]> getFullCrl(@PathVariable String alias, WebRequest request) throws GeneralSecurityException,
+            IOException, OperatorCreationException {
+        return toResponse(service.getFullCrl(alias), request);
+    }
+
+    @GetMapping("/{alias}/delta")
+    public ResponseEntity<byte[]> getDeltaCrl(@PathVariable String alias, WebRequest request) throws GeneralSecurityException,
+            IOException, OperatorCreationException {
+        return toResponse(service.getDeltaCrl(alias), request);
+    }
+
+    // The cached DER is written as is, the CRL number doubles as the ETag
+    private static ResponseEntity<byte[]> toResponse(RevocationService.EncodedCrl crl, WebRequest request) {
+        if (crl == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        var etag = "\"" + crl.number() + "\"";
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH)))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .headers(headers -> headers.setExpires(crl.nextUpdate().getTime()))
+                .contentType(PKIX_CRL)
+                .body(crl.encoded());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.odysseypki.controller;
+
+import com.example.odysseypki.service.OcspService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Base64;
+
+@RestController
+@RequestMapping(value = "/api/v1/ocsp")
+public class OcspController {
+    private static final String OCSP_REQUEST = "application/ocsp-request";
+    private static final String OCSP_RESPONSE = "application/ocsp-response";
+
+    @Autowired
+    private OcspService service;
+
+    @PostMapping(consumes = OCSP_REQUEST, produces = OCSP_RESPONSE)
+    public ResponseEntity<byte[]> respond(@RequestBody byte[] request) throws IOException {
+        return toResponse(service.respond(request));
+    }
+
+    // Base64 may contain '/', so the request is captured with the rest of the (already URL-decoded) path
+    @GetMapping(value = "/{*request}", produces = OCSP_RESPONSE)
+    public ResponseEntity<byte[]> respondToGet(@PathVariable String request) throws IOException {
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(request.startsWith("/") ? request.substring(1) : request);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return toResponse(service.respond(decoded));
+    }
+
+    private static ResponseEntity<byte[]> toResponse(byte[] response) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(OCSP_RESPONSE))
+                .body(response);
+    }
+}
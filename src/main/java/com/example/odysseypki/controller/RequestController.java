@@ -5,13 +5,17 @@ import com.example.odysseypki.dto.RequestDTO;
 import com.example.odysseypki.entity.Request;
 import com.example.odysseypki.mapper.RequestDTOMapper;
 import com.example.odysseypki.service.CertificateService;
+import com.example.odysseypki.service.IssuanceJobQueue;
 import com.example.odysseypki.service.RequestService;
+import org.bouncycastle.operator.OperatorCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin("https://localhost:4200")
 @RestController
@@ -19,6 +23,8 @@ import java.util.List;
 public class RequestController {
     @Autowired
     private RequestService service;
+    @Autowired
+    private IssuanceJobQueue issuanceJobQueue;
 
     @GetMapping
     public ResponseEntity<?> getAll() {
@@ -42,12 +48,40 @@ public class RequestController {
         return new ResponseEntity<>(RequestDTOMapper.fromRequestToDTO(request), HttpStatus.CREATED);
     }
 
+    // PKCS#10 request in PEM or DER, the requester keeps the private key
+    @PostMapping("/csr")
+    public ResponseEntity<?> createRequestFromCsr(@RequestBody byte[] csr) throws OperatorCreationException {
+        try {
+            var request = service.createFromCsr(csr);
+            return new ResponseEntity<>(RequestDTOMapper.fromRequestToDTO(request), HttpStatus.CREATED);
+        } catch (IllegalArgumentException | IOException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PutMapping("/accept/{id}")
     public ResponseEntity<?> acceptRequest(@PathVariable Long id) {
         var request = service.accept(id);
         return new ResponseEntity<>(RequestDTOMapper.fromRequestToDTO(request), HttpStatus.OK);
     }
 
+    @PutMapping("/accept")
+    public ResponseEntity<?> acceptRequests(@RequestBody List<Long> ids) {
+        return new ResponseEntity<>(mapToDTO(service.acceptAll(ids)), HttpStatus.OK);
+    }
+
+    // Long poll, answers as soon as issuance finishes or with the current state after waitMillis
+    @GetMapping("/{id}/issuance")
+    public CompletableFuture<ResponseEntity<?>> getIssuance(@PathVariable Long id, @RequestParam(defaultValue = "0") long waitMillis) {
+        var request = service.findById(id);
+        if (waitMillis <= 0 || request.getIssuanceStatus() == null)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(RequestDTOMapper.fromRequestToDTO(request), HttpStatus.OK));
+
+        return issuanceJobQueue.awaitCompletion(id, Math.min(waitMillis, 30000))
+                .thenApply(completed -> new ResponseEntity<>(
+                        RequestDTOMapper.fromRequestToDTO(completed != null ? completed : service.findById(id)), HttpStatus.OK));
+    }
+
     @PutMapping("/decline/{id}")
     public ResponseEntity<?> declineRequest(@PathVariable Long id) {
         var request = service.decline(id);
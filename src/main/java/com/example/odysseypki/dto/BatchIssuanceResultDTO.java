@@ -0,0 +1,16 @@
+package com.example.odysseypki.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchIssuanceResultDTO {
+    private int index;
+    private CertificateDTO certificate;
+    private String error;
+}
@@ -25,4 +25,5 @@ public class CertificateCreationDTO {
     private Boolean isCa;
     private Boolean isHttps;
     private List<String> keyUsages;
+    private String keyAlgorithm;
 }
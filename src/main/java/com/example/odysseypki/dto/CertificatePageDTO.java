@@ -0,0 +1,17 @@
+package com.example.odysseypki.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CertificatePageDTO {
+    private List<CertificateDTO> certificates;
+    private String nextCursor;
+}
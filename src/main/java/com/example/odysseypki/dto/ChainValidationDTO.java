@@ -0,0 +1,18 @@
+package com.example.odysseypki.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChainValidationDTO {
+    private String alias;
+    private boolean valid;
+    private List<String> problems;
+}
@@ -20,4 +20,8 @@ public class RequestDTO {
     private String uid;
     private LocalDateTime date;
     private Request.Status status;
+    private Request.IssuanceStatus issuanceStatus;
+    private Integer issuanceAttempts;
+    private String certificateAlias;
+    private String issuanceError;
 }
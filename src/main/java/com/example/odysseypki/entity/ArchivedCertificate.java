@@ -0,0 +1,30 @@
+package com.example.odysseypki.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(columnList = "serialNumber"),
+        @Index(columnList = "notAfter")
+})
+public class ArchivedCertificate {
+    @Id
+    private String alias;
+    private String parentAlias;
+    private String serialNumber;
+    private LocalDateTime notAfter;
+    private LocalDateTime date;
+    // Base64 DER of the expired certificate
+    @Column(length = 65535)
+    private String encoded;
+}
@@ -0,0 +1,29 @@
+package com.example.odysseypki.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Certificate flagged to be renewed automatically before it expires
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(columnList = "notAfter, alias")
+})
+public class Renewal {
+    @Id
+    private String alias;
+    // Copied from the certificate so flagged certificates are found in expiry order
+    private LocalDateTime notAfter;
+    private LocalDateTime date;
+}
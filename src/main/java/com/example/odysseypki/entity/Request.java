@@ -1,5 +1,6 @@
 package com.example.odysseypki.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -25,5 +26,13 @@ public class Request {
     private String uid;
     private LocalDateTime date;
     private Status status;
+    private IssuanceStatus issuanceStatus;
+    private Integer issuanceAttempts;
+    private String certificateAlias;
+    private String issuanceError;
+    // Base64 DER of the PKCS#10 request, when the requester supplied their own key
+    @Column(length = 8192)
+    private String csr;
     public enum Status {PENDING, ACCEPTED, DECLINED}
+    public enum IssuanceStatus {QUEUED, RUNNING, ISSUED, FAILED}
 }
@@ -0,0 +1,29 @@
+package com.example.odysseypki.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(columnList = "issuerAlias"),
+        @Index(columnList = "serialNumber")
+})
+public class Revocation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String issuerAlias;
+    private String alias;
+    private String serialNumber;
+    private LocalDateTime date;
+    private Integer reason;
+}
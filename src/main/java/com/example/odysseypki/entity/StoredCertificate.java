@@ -0,0 +1,35 @@
+package com.example.odysseypki.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(columnList = "parentAlias"),
+        @Index(columnList = "serialNumber", unique = true),
+        @Index(columnList = "uid"),
+        @Index(columnList = "notAfter")
+})
+public class StoredCertificate {
+    @Id
+    private String alias;
+    private String parentAlias;
+    private String serialNumber;
+    private String uid;
+    private LocalDateTime notAfter;
+    // Base64 DER certificate
+    @Column(length = 65535, nullable = false)
+    private String encoded;
+    // Base64 PKCS#8 key, AES-GCM encrypted under a key derived from the ODYSSEY secret
+    @Column(length = 65535)
+    private String privateKey;
+}
@@ -0,0 +1,7 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.entity.ArchivedCertificate;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ArchivedCertificateRepository extends JpaRepository<ArchivedCertificate, String> {
+}
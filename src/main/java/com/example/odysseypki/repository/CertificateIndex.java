@@ -0,0 +1,147 @@
+package com.example.odysseypki.repository;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Secondary index from subject attributes to aliases, kept in sync by CertificateRepository
+@Component
+public class CertificateIndex {
+    private final NavigableSet<String> aliases = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> uids = new ConcurrentHashMap<>();
+    private final Map<BigInteger, String> serialNumbers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> commonNames = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> emails = new ConcurrentHashMap<>();
+    // notAfter in millis -> aliases, ordered so expiring certificates are found without a scan
+    private final NavigableMap<Long, NavigableSet<String>> expiries = new ConcurrentSkipListMap<>();
+
+    // Position in the expiry order, entries are ordered by notAfter and then alias
+    public record Expiry(long notAfter, String alias) {}
+
+    public void add(String alias, X509Certificate certificate) {
+        var subject = X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded());
+
+        aliases.add(alias);
+        serialNumbers.put(certificate.getSerialNumber(), alias);
+        for (var uid : attributeValues(subject, BCStyle.UID))
+            uids.computeIfAbsent(uid, k -> ConcurrentHashMap.newKeySet()).add(alias);
+        for (var commonName : attributeValues(subject, BCStyle.CN))
+            commonNames.computeIfAbsent(commonName, k -> ConcurrentHashMap.newKeySet()).add(alias);
+        for (var email : emailValues(certificate))
+            emails.computeIfAbsent(email.toLowerCase(), k -> ConcurrentHashMap.newKeySet()).add(alias);
+        expiries.computeIfAbsent(certificate.getNotAfter().getTime(), k -> new ConcurrentSkipListSet<>()).add(alias);
+    }
+
+    public void remove(String alias, X509Certificate certificate) {
+        aliases.remove(alias);
+        if (certificate == null) return;
+        var subject = X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded());
+
+        serialNumbers.remove(certificate.getSerialNumber(), alias);
+        for (var uid : attributeValues(subject, BCStyle.UID))
+            removeFromSet(uids, uid, alias);
+        for (var commonName : attributeValues(subject, BCStyle.CN))
+            removeFromSet(commonNames, commonName, alias);
+        for (var email : emailValues(certificate))
+            removeFromSet(emails, email.toLowerCase(), alias);
+        removeFromSet(expiries, certificate.getNotAfter().getTime(), alias);
+    }
+
+    public void clear() {
+        aliases.clear();
+        uids.clear();
+        serialNumbers.clear();
+        commonNames.clear();
+        emails.clear();
+        expiries.clear();
+    }
+
+    // Sorted view used for cursor based pagination
+    public NavigableSet<String> findAliasesAfter(String cursor) {
+        return Collections.unmodifiableNavigableSet(cursor == null ? aliases : aliases.tailSet(cursor, false));
+    }
+
+    // Renewal keeps the subject, so several live certificates may carry the same UID
+    public Set<String> findAliasesByUid(String uid) {
+        return Set.copyOf(uids.getOrDefault(uid, Set.of()));
+    }
+
+    public String findAliasBySerialNumber(BigInteger serialNumber) {
+        return serialNumbers.get(serialNumber);
+    }
+
+    public Set<String> findAliasesByCommonName(String commonName) {
+        return Set.copyOf(commonNames.getOrDefault(commonName, Set.of()));
+    }
+
+    public Set<String> findAliasesByEmail(String email) {
+        return Set.copyOf(emails.getOrDefault(email.toLowerCase(), Set.of()));
+    }
+
+    // Aliases expiring in [from, to), earliest first
+    public List<String> findAliasesExpiringBetween(long from, long to, int limit) {
+        var found = new ArrayList<String>();
+        for (var aliases : expiries.subMap(from, true, to, false).values())
+            for (var alias : aliases) {
+                if (found.size() == limit) return found;
+                found.add(alias);
+            }
+        return found;
+    }
+
+    // Entries expiring before `to` that come after the cursor, or from the earliest one without it
+    public List<Expiry> findExpiriesAfter(Expiry cursor, long to, int limit) {
+        var found = new ArrayList<Expiry>();
+        var range = cursor == null ? expiries.headMap(to, false) : expiries.subMap(cursor.notAfter(), true, to, false);
+        for (var entry : range.entrySet()) {
+            var aliases = cursor != null && entry.getKey() == cursor.notAfter()
+                    ? entry.getValue().tailSet(cursor.alias(), false)
+                    : entry.getValue();
+            for (var alias : aliases) {
+                if (found.size() == limit) return found;
+                found.add(new Expiry(entry.getKey(), alias));
+            }
+        }
+        return found;
+    }
+
+    static List<String> attributeValues(X500Name name, ASN1ObjectIdentifier type) {
+        var values = new ArrayList<String>();
+        for (var rdn : name.getRDNs(type))
+            values.add(IETFUtils.valueToString(rdn.getFirst().getValue()));
+        return values;
+    }
+
+    private static List<String> emailValues(X509Certificate certificate) {
+        var values = new ArrayList<String>();
+        try {
+            var altNames = certificate.getSubjectAlternativeNames();
+            if (altNames == null) return values;
+
+            for (var altName : altNames)
+                if ((Integer) altName.get(0) == GeneralName.rfc822Name)
+                    values.add((String) altName.get(1));
+        } catch (CertificateParsingException e) {
+            throw new RuntimeException(e);
+        }
+        return values;
+    }
+
+    private static <K, S extends Set<String>> void removeFromSet(Map<K, S> index, K key, String alias) {
+        index.computeIfPresent(key, (k, aliases) -> {
+            aliases.remove(alias);
+            return aliases.isEmpty() ? null : aliases;
+        });
+    }
+}
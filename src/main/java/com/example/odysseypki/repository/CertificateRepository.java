@@ -1,67 +1,312 @@
 package com.example.odysseypki.repository;
 
+import com.example.odysseypki.OdysseyPkiProperties;
 import com.example.odysseypki.certificate.CertificateTree;
 import com.example.odysseypki.entity.Certificate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.GeneralSecurityException;
-import java.security.PrivateKey;
+import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Component
 public class CertificateRepository {
-    private static final String ALIAS_TREE_PATH = "src/main/resources/static/alias-tree.dat";
+    private static final Logger log = LoggerFactory.getLogger(CertificateRepository.class);
+    private static final long MAX_COMMIT_RETRY_DELAY_MILLIS = 60_000;
 
     @Autowired
-    private KeyStoreRepository keyStoreRepository;
+    private CertificateStore store;
+    @Autowired
+    private CertificateIndex certificateIndex;
+    @Autowired
+    private SubtreeLocks subtreeLocks;
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    public Certificate save(String parentAlias, Certificate certificate) throws IOException, GeneralSecurityException {
-        var tree = CertificateTree.deserialize(ALIAS_TREE_PATH);
+    // Resident alias tree. The tree lock only guards the in-memory structure for the
+    // duration of a single mutation, ordering between writers comes from the subtree locks.
+    private CertificateTree tree;
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+    // Store writes are made durable by a coalesced commit
+    private final Object commitLock = new Object();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "certificate-committer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-        keyStoreRepository.save(certificate);
-        tree.addAlias(parentAlias, certificate.getAlias());
-        tree.serialize(ALIAS_TREE_PATH);
+    @PostConstruct
+    public void init() throws IOException, GeneralSecurityException {
+        tree = store.loadTree();
+        if (tree == null)
+            return;
+
+        // A commit interrupted after a deletion can leave the tree referencing removed entries
+        var missing = new ArrayList<String>();
+        for (var entry : store.loadAll(tree.getAllAliases()).entrySet())
+            if (entry.getValue() != null)
+                certificateIndex.add(entry.getKey(), entry.getValue());
+            else
+                missing.add(entry.getKey());
+        missing.forEach(tree::removeAlias);
+    }
 
+    @PreDestroy
+    public void shutdown() throws IOException, CertificateException {
+        committer.shutdownNow();
+        commit();
+    }
+
+    public Certificate save(String parentAlias, Certificate certificate) throws IOException, GeneralSecurityException {
+        saveAll(Map.of(parentAlias, List.of(certificate)));
         return certificate;
     }
 
+    // Persists certificates grouped by parent alias, holding shared locks on the paths to the parents
+    public void saveAll(Map<String, List<Certificate>> certificates) throws IOException, GeneralSecurityException {
+        if (certificates.isEmpty()) return;
+
+        var paths = new HashSet<String>();
+        for (var parentAlias : certificates.keySet())
+            paths.addAll(findPath(parentAlias));
+
+        try (var ignored = subtreeLocks.lock(paths, List.of())) {
+            for (var parentAlias : certificates.keySet())
+                if (!contains(parentAlias))
+                    throw new IllegalArgumentException("Parent certificate does not exist.");
+
+            store.saveAll(certificates);
+
+            treeLock.writeLock().lock();
+            try {
+                for (var entry : certificates.entrySet())
+                    for (var certificate : entry.getValue())
+                        getTree().addAlias(entry.getKey(), certificate.getAlias());
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+
+            for (var list : certificates.values())
+                for (var certificate : list)
+                    certificateIndex.add(certificate.getAlias(), certificate.getX509Certificate());
+        }
+
+        scheduleCommit();
+    }
+
     public void saveRoot(Certificate certificate) throws IOException, GeneralSecurityException {
-        keyStoreRepository.createKeyStore();
-        keyStoreRepository.save(certificate);
+        try (var ignored = subtreeLocks.lockAll()) {
+            treeLock.writeLock().lock();
+            try {
+                store.saveRoot(certificate);
+                tree = CertificateTree.createTree(certificate.getAlias());
+            } finally {
+                treeLock.writeLock().unlock();
+            }
 
-        var tree = CertificateTree.createTree(certificate.getAlias());
-        tree.serialize(ALIAS_TREE_PATH);
+            certificateIndex.clear();
+            certificateIndex.add(certificate.getAlias(), certificate.getX509Certificate());
+            commit();
+        }
     }
 
     public X509Certificate find(String alias) throws IOException, GeneralSecurityException {
-        return keyStoreRepository.load(alias);
+        return store.load(alias);
     }
 
     public Map<String, X509Certificate> findAll() throws IOException, GeneralSecurityException {
-        var tree = CertificateTree.deserialize(ALIAS_TREE_PATH);
-        return keyStoreRepository.loadAll(tree.getAllAliases());
+        List<String> aliases;
+        treeLock.readLock().lock();
+        try {
+            aliases = getTree().getAllAliases();
+        } finally {
+            treeLock.readLock().unlock();
+        }
+
+        return store.loadAll(aliases);
+    }
+
+    public NavigableSet<String> findAliasesAfter(String cursor) {
+        return certificateIndex.findAliasesAfter(cursor);
     }
 
-    public String findParentAlias(String alias) throws IOException {
-        var tree = CertificateTree.deserialize(ALIAS_TREE_PATH);
-        return tree.findParentAlias(alias);
+    // The store is asked on a miss, it may hold certificates the resident index has not loaded
+    public Set<String> findAliasesByUid(String uid) {
+        var aliases = certificateIndex.findAliasesByUid(uid);
+        if (!aliases.isEmpty())
+            return aliases;
+
+        var alias = store.findAliasByUid(uid);
+        return alias == null ? Set.of() : Set.of(alias);
+    }
+
+    public String findAliasBySerialNumber(BigInteger serialNumber) {
+        var alias = certificateIndex.findAliasBySerialNumber(serialNumber);
+        return alias != null ? alias : store.findAliasBySerialNumber(serialNumber);
     }
 
-    public List<X509Certificate> delete(String alias) throws IOException, GeneralSecurityException {
-        var tree = CertificateTree.deserialize(ALIAS_TREE_PATH);
-        var aliasesForDeletion = tree.removeAlias(alias);
-        var deleted = new ArrayList<X509Certificate>();
+    public Set<String> findAliasesByCommonName(String commonName) {
+        return certificateIndex.findAliasesByCommonName(commonName);
+    }
 
-        for (var a : aliasesForDeletion)
-            deleted.add(keyStoreRepository.delete(a));
+    public Set<String> findAliasesByEmail(String email) {
+        return certificateIndex.findAliasesByEmail(email);
+    }
+
+    public List<String> findAliasesExpiringBetween(long from, long to, int limit) {
+        return certificateIndex.findAliasesExpiringBetween(from, to, limit);
+    }
+
+    public List<CertificateIndex.Expiry> findExpiriesAfter(CertificateIndex.Expiry cursor, long to, int limit) {
+        return certificateIndex.findExpiriesAfter(cursor, to, limit);
+    }
+
+    public boolean hasChildren(String alias) {
+        treeLock.readLock().lock();
+        try {
+            return getTree().hasChildren(alias);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    public String findParentAlias(String alias) {
+        treeLock.readLock().lock();
+        try {
+            return getTree().findParentAlias(alias);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    // Holds an exclusive lock on the subtree root, issuance elsewhere in the tree carries on
+    public SubtreeDeletion delete(String alias) throws IOException, GeneralSecurityException {
+        var path = findPath(alias);
+        var certificates = new LinkedHashMap<String, X509Certificate>();
+        var parentAliases = new LinkedHashMap<String, String>();
+
+        try (var ignored = subtreeLocks.lock(path, List.of(alias))) {
+            List<String> aliasesForDeletion;
+
+            treeLock.writeLock().lock();
+            try {
+                var tree = getTree();
+                if (!tree.contains(alias))
+                    return new SubtreeDeletion(certificates, parentAliases);
+
+                for (var a : tree.getSubtreeAliases(alias))
+                    parentAliases.put(a, tree.findParentAlias(a));
+                aliasesForDeletion = tree.removeAlias(alias);
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+
+            certificates.putAll(store.deleteAll(aliasesForDeletion));
+            certificates.forEach(certificateIndex::remove);
+        }
+
+        scheduleCommit();
+        return new SubtreeDeletion(certificates, parentAliases);
+    }
+
+    // Single path through which certificates reach the disk. Only the tree copy is taken under
+    // the tree lock, issuance and deletion carry on while it is written.
+    public void commit() throws IOException, CertificateException {
+        synchronized (commitLock) {
+            commitScheduled.set(false);
+
+            var outcome = "success";
+            var sample = Timer.start();
+            try {
+                CertificateTree snapshot;
+                treeLock.readLock().lock();
+                try {
+                    if (tree == null) return;
+                    snapshot = tree.copy();
+                } finally {
+                    treeLock.readLock().unlock();
+                }
+
+                store.commit(snapshot);
+            } catch (IOException | CertificateException | RuntimeException e) {
+                outcome = "failure";
+                throw e;
+            } finally {
+                sample.stop(meterRegistry.timer("odyssey.commit", "outcome", outcome));
+            }
+        }
+    }
+
+    private void scheduleCommit() {
+        if (!commitScheduled.compareAndSet(false, true))
+            return;
+
+        scheduleCommit(0);
+    }
+
+    // A failed commit is retried with a growing delay until one goes through, unless a write
+    // in the meantime has already scheduled the next one
+    private void scheduleCommit(int failures) {
+        var delay = Math.min(properties.getCommitDelayMillis() << Math.min(failures, 16), MAX_COMMIT_RETRY_DELAY_MILLIS);
+        committer.schedule(() -> {
+            try {
+                commit();
+            } catch (IOException | CertificateException | RuntimeException e) {
+                log.warn("Commit of the certificate tree failed {} time(s), retrying", failures + 1, e);
+                if (!committer.isShutdown() && commitScheduled.compareAndSet(false, true))
+                    scheduleCommit(failures + 1);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Aliases from the given one up to the root
+    private List<String> findPath(String alias) {
+        var path = new ArrayList<String>();
+
+        treeLock.readLock().lock();
+        try {
+            var tree = getTree();
+            for (var a = alias; a != null; a = tree.findParentAlias(a))
+                path.add(a);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+
+        return path;
+    }
+
+    private boolean contains(String alias) {
+        treeLock.readLock().lock();
+        try {
+            return getTree().contains(alias);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
 
-        tree.serialize(ALIAS_TREE_PATH);
-        return deleted;
+    private CertificateTree getTree() {
+        if (tree == null)
+            throw new IllegalStateException("Certificate tree is not initialized.");
+        return tree;
     }
 }
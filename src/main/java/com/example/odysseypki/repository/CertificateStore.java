@@ -0,0 +1,40 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.certificate.CertificateTree;
+import com.example.odysseypki.entity.Certificate;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+// Durable storage behind CertificateRepository, selected with ODYSSEY_CERTIFICATE_STORE.
+// The repository keeps the alias tree and index resident and uses the store as the source of truth.
+public interface CertificateStore {
+    // Hierarchy as last persisted, null when nothing has been stored yet
+    CertificateTree loadTree() throws IOException, GeneralSecurityException;
+
+    X509Certificate load(String alias) throws IOException, GeneralSecurityException;
+
+    // Every requested alias is present in the result, mapped to null when it is not stored
+    Map<String, X509Certificate> loadAll(List<String> aliases) throws IOException, GeneralSecurityException;
+
+    // Lookups used when the resident index misses, stores shared between nodes answer them
+    String findAliasBySerialNumber(BigInteger serialNumber);
+
+    String findAliasByUid(String uid);
+
+    // Drops everything stored and starts a new hierarchy
+    void saveRoot(Certificate root) throws IOException, GeneralSecurityException;
+
+    void saveAll(Map<String, List<Certificate>> certificates) throws IOException, GeneralSecurityException;
+
+    // Removed certificates by alias in the given order, null for aliases that were not stored
+    Map<String, X509Certificate> deleteAll(List<String> aliases) throws IOException, GeneralSecurityException;
+
+    // Called from the single commit path with a copy of the tree, stores that write through may ignore it
+    void commit(CertificateTree tree) throws IOException, CertificateException;
+}
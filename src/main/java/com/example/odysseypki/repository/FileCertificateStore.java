@@ -0,0 +1,98 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateTree;
+import com.example.odysseypki.entity.Certificate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+// Key store file plus alias-tree.dat, only usable by a single node
+@Component
+@ConditionalOnProperty(name = "ODYSSEY_CERTIFICATE_STORE", havingValue = "FILE", matchIfMissing = true)
+public class FileCertificateStore implements CertificateStore {
+    @Autowired
+    private KeyStoreRepository keyStoreRepository;
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public CertificateTree loadTree() throws IOException {
+        if (!Files.exists(Paths.get(properties.getAliasTreePath())) || !Files.exists(Paths.get(keyStoreRepository.getFilePath())))
+            return null;
+
+        CertificateTree.migrate(properties.getAliasTreePath());
+
+        var sample = Timer.start();
+        try {
+            return CertificateTree.deserialize(properties.getAliasTreePath());
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.tree.deserialize"));
+        }
+    }
+
+    @Override
+    public X509Certificate load(String alias) throws IOException, GeneralSecurityException {
+        return keyStoreRepository.load(alias);
+    }
+
+    @Override
+    public Map<String, X509Certificate> loadAll(List<String> aliases) throws IOException, GeneralSecurityException {
+        return keyStoreRepository.loadAll(aliases);
+    }
+
+    // Nothing is stored that the resident index does not already hold
+    @Override
+    public String findAliasBySerialNumber(BigInteger serialNumber) {
+        return null;
+    }
+
+    @Override
+    public String findAliasByUid(String uid) {
+        return null;
+    }
+
+    @Override
+    public void saveRoot(Certificate root) throws IOException, GeneralSecurityException {
+        keyStoreRepository.createKeyStore();
+        keyStoreRepository.save(root);
+    }
+
+    @Override
+    public void saveAll(Map<String, List<Certificate>> certificates) throws IOException, GeneralSecurityException {
+        keyStoreRepository.saveAll(certificates.values().stream().flatMap(List::stream).toList());
+    }
+
+    @Override
+    public Map<String, X509Certificate> deleteAll(List<String> aliases) throws IOException, GeneralSecurityException {
+        return keyStoreRepository.deleteAll(aliases);
+    }
+
+    // The key store goes first. The tree is a copy taken before, so it may still reference
+    // entries deleted since; the next commit drops them and loading prunes them after a crash.
+    @Override
+    public void commit(CertificateTree tree) throws IOException, CertificateException {
+        keyStoreRepository.flush();
+
+        var sample = Timer.start();
+        try {
+            tree.serialize(properties.getAliasTreePath());
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.tree.serialize"));
+        }
+    }
+}
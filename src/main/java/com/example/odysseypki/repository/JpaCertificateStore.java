@@ -0,0 +1,198 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.acl.AesEncryption;
+import com.example.odysseypki.acl.VaultCipher;
+import com.example.odysseypki.certificate.CertificateTree;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.entity.StoredCertificate;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Relational store. The database is the durable copy, but the tree and index resident in
+// CertificateRepository are only loaded at startup and CA keys stay in the local ACL, so one
+// node issues and deletes certificates at a time.
+@Component
+@ConditionalOnProperty(name = "ODYSSEY_CERTIFICATE_STORE", havingValue = "JPA")
+public class JpaCertificateStore implements CertificateStore {
+    private static final String SALT_SEPARATOR = ":";
+
+    // Keeps IN lists well below the bind parameter limits of the databases (32767 on PostgreSQL)
+    private static final int IN_LIST_SIZE = 1000;
+
+    @Autowired
+    private StoredCertificateRepository repository;
+    @Autowired
+    private OdysseyPkiProperties properties;
+
+    // Private keys are stored as "<salt>:<AES-GCM record>" bound to the alias. Each start writes
+    // under a new salt, ciphers for the salts found in older rows are derived once and kept.
+    private final Map<String, VaultCipher> ciphers = new ConcurrentHashMap<>();
+    private String salt;
+
+    @PostConstruct
+    public void init() {
+        salt = Base64.getEncoder().encodeToString(VaultCipher.newSalt());
+        cipher(salt);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CertificateTree loadTree() {
+        String root = null;
+        var children = new HashMap<String, List<String>>();
+        for (var link : repository.findAllBy()) {
+            if (link.getParentAlias() == null)
+                root = link.getAlias();
+            else
+                children.computeIfAbsent(link.getParentAlias(), k -> new ArrayList<>()).add(link.getAlias());
+        }
+        if (root == null)
+            return null;
+
+        // Rows come back in no particular order, parents are added before their children
+        var tree = CertificateTree.createTree(root);
+        var queue = new ArrayDeque<String>(List.of(root));
+        while (!queue.isEmpty()) {
+            var parent = queue.poll();
+            for (var child : children.getOrDefault(parent, List.of())) {
+                tree.addAlias(parent, child);
+                queue.add(child);
+            }
+        }
+        return tree;
+    }
+
+    @Override
+    public X509Certificate load(String alias) throws GeneralSecurityException {
+        var stored = repository.findById(alias);
+        return stored.isPresent() ? decode(stored.get()) : null;
+    }
+
+    @Override
+    public Map<String, X509Certificate> loadAll(List<String> aliases) throws GeneralSecurityException {
+        var certificates = new HashMap<String, X509Certificate>();
+        for (var alias : aliases)
+            certificates.put(alias, null);
+        for (var stored : findAllById(aliases))
+            certificates.put(stored.getAlias(), decode(stored));
+        return certificates;
+    }
+
+    @Override
+    public String findAliasBySerialNumber(BigInteger serialNumber) {
+        return repository.findBySerialNumber(serialNumber.toString()).map(StoredCertificate::getAlias).orElse(null);
+    }
+
+    @Override
+    public String findAliasByUid(String uid) {
+        return repository.findFirstByUid(uid).map(StoredCertificate::getAlias).orElse(null);
+    }
+
+    @Override
+    @Transactional
+    public void saveRoot(Certificate root) throws GeneralSecurityException {
+        repository.deleteAllInBatch();
+        repository.save(toEntity(null, root));
+    }
+
+    @Override
+    @Transactional
+    public void saveAll(Map<String, List<Certificate>> certificates) throws GeneralSecurityException {
+        var entities = new ArrayList<StoredCertificate>();
+        for (var entry : certificates.entrySet())
+            for (var certificate : entry.getValue())
+                entities.add(toEntity(entry.getKey(), certificate));
+
+        repository.saveAll(entities);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, X509Certificate> deleteAll(List<String> aliases) throws GeneralSecurityException {
+        var stored = new HashMap<String, StoredCertificate>();
+        for (var certificate : findAllById(aliases))
+            stored.put(certificate.getAlias(), certificate);
+
+        var deleted = new LinkedHashMap<String, X509Certificate>();
+        for (var alias : aliases)
+            deleted.put(alias, stored.containsKey(alias) ? decode(stored.get(alias)) : null);
+
+        var storedAliases = List.copyOf(stored.keySet());
+        for (var from = 0; from < storedAliases.size(); from += IN_LIST_SIZE)
+            repository.deleteAllByIdInBatch(storedAliases.subList(from, Math.min(from + IN_LIST_SIZE, storedAliases.size())));
+        return deleted;
+    }
+
+    // Every write above is committed by its own transaction
+    @Override
+    public void commit(CertificateTree tree) {
+    }
+
+    private List<StoredCertificate> findAllById(List<String> aliases) {
+        var found = new ArrayList<StoredCertificate>(aliases.size());
+        for (var from = 0; from < aliases.size(); from += IN_LIST_SIZE)
+            found.addAll(repository.findAllById(aliases.subList(from, Math.min(from + IN_LIST_SIZE, aliases.size()))));
+        return found;
+    }
+
+    private StoredCertificate toEntity(String parentAlias, Certificate certificate) throws GeneralSecurityException {
+        var x509Certificate = certificate.getX509Certificate();
+        var subject = X500Name.getInstance(x509Certificate.getSubjectX500Principal().getEncoded());
+        var uids = CertificateIndex.attributeValues(subject, BCStyle.UID);
+
+        String privateKey = null;
+        if (certificate.getPrivateKey() != null)
+            privateKey = salt + SALT_SEPARATOR + cipher(salt).encrypt(
+                    Base64.getEncoder().encodeToString(certificate.getPrivateKey().getEncoded()),
+                    certificate.getAlias());
+
+        return new StoredCertificate(
+                certificate.getAlias(), parentAlias,
+                x509Certificate.getSerialNumber().toString(),
+                uids.isEmpty() ? null : uids.get(0),
+                LocalDateTime.ofInstant(x509Certificate.getNotAfter().toInstant(), ZoneId.systemDefault()),
+                Base64.getEncoder().encodeToString(x509Certificate.getEncoded()),
+                privateKey);
+    }
+
+    // Base64 PKCS#8 private key stored with the certificate, null when it has none
+    public String loadPrivateKey(String alias) throws GeneralSecurityException {
+        var stored = repository.findById(alias).orElse(null);
+        if (stored == null || stored.getPrivateKey() == null)
+            return null;
+
+        // Rows written before the switch to AES-GCM hold a bare AES/ECB record without a salt
+        var encrypted = stored.getPrivateKey();
+        var separator = encrypted.indexOf(SALT_SEPARATOR);
+        if (separator < 0)
+            return AesEncryption.decrypt(encrypted, properties.getSecret());
+
+        return cipher(encrypted.substring(0, separator)).decrypt(encrypted.substring(separator + 1), alias);
+    }
+
+    private VaultCipher cipher(String salt) {
+        return ciphers.computeIfAbsent(salt, s -> VaultCipher.derive(
+                properties.getSecret(), Base64.getDecoder().decode(s), properties.getAclKdfIterations()));
+    }
+
+    private static X509Certificate decode(StoredCertificate stored) throws GeneralSecurityException {
+        var encoded = Base64.getDecoder().decode(stored.getEncoded());
+        return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(encoded));
+    }
+}
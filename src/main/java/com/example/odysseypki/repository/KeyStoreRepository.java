@@ -2,89 +2,195 @@ package com.example.odysseypki.repository;
 
 import com.example.odysseypki.OdysseyPkiProperties;
 import com.example.odysseypki.entity.Certificate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Component
 public class KeyStoreRepository {
 
     @Autowired
     private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Resident key store, reads never touch the disk
+    // Mutations are persisted by the commit path of CertificateRepository
+    private KeyStore keyStore;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private Timer loadTimer;
+    private Timer loadAllTimer;
+    private Timer storeTimer;
+
+    @PostConstruct
+    public void init() throws IOException, CertificateException {
+        loadTimer = meterRegistry.timer("odyssey.keystore.load");
+        loadAllTimer = meterRegistry.timer("odyssey.keystore.load.all");
+        storeTimer = meterRegistry.timer("odyssey.keystore.store");
+
+        if (!Files.exists(Paths.get(getFilePath())))
+            return;
+
+        lock.writeLock().lock();
+        try {
+            keyStore = loadKeyStore();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-    public void save(Certificate certificate) throws IOException, CertificateException, KeyStoreException {
-        var ks = loadKeyStore();
+    @PreDestroy
+    public void shutdown() throws IOException, CertificateException {
+        flush();
+    }
 
-        ks.setKeyEntry(
-                certificate.getAlias(),
-                certificate.getPrivateKey(), getPassword(),
-                new java.security.cert.Certificate[] {certificate.getX509Certificate()}
-        );
+    public void save(Certificate certificate) throws IOException, CertificateException, KeyStoreException {
+        saveAll(List.of(certificate));
+    }
 
-        saveKeyStore(ks);
+    public void saveAll(List<Certificate> certificates) throws IOException, CertificateException, KeyStoreException {
+        lock.writeLock().lock();
+        try {
+            var ks = getKeyStore();
+            for (var certificate : certificates)
+                ks.setKeyEntry(
+                        certificate.getAlias(),
+                        certificate.getPrivateKey(), getPassword(),
+                        new java.security.cert.Certificate[] {certificate.getX509Certificate()}
+                );
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public X509Certificate delete(String alias) throws IOException, CertificateException, KeyStoreException {
-        var certificate = load(alias);
+        return deleteAll(List.of(alias)).get(alias);
+    }
 
-        var ks = loadKeyStore();
-        ks.deleteEntry(alias);
-        saveKeyStore(ks);
+    // Removes every alias in one pass under the write lock, the result keeps the given order
+    public Map<String, X509Certificate> deleteAll(List<String> aliases) throws IOException, CertificateException, KeyStoreException {
+        var certificates = new LinkedHashMap<String, X509Certificate>();
 
-        return certificate;
+        lock.writeLock().lock();
+        try {
+            var ks = getKeyStore();
+            for (var alias : aliases) {
+                certificates.put(alias, get(ks, alias));
+                if (ks.containsAlias(alias))
+                    ks.deleteEntry(alias);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return certificates;
     }
 
     public X509Certificate load(String alias) throws IOException, CertificateException, KeyStoreException {
-        var ks = loadKeyStore();
-
-        if (ks.isKeyEntry(alias))
-            return (X509Certificate) ks.getCertificate(alias);
-
-        return null;
+        var sample = Timer.start();
+        lock.readLock().lock();
+        try {
+            return get(getKeyStore(), alias);
+        } finally {
+            lock.readLock().unlock();
+            sample.stop(loadTimer);
+        }
     }
 
     public Map<String, X509Certificate> loadAll(List<String> aliases) throws IOException, CertificateException, KeyStoreException {
         var certificates = new HashMap<String, X509Certificate>();
 
-        for (var a : aliases)
-            certificates.put(a, load(a));
+        var sample = Timer.start();
+        lock.readLock().lock();
+        try {
+            var ks = getKeyStore();
+            for (var a : aliases)
+                certificates.put(a, get(ks, a));
+        } finally {
+            lock.readLock().unlock();
+            sample.stop(loadAllTimer);
+        }
 
         return certificates;
     }
 
-    private KeyStore loadKeyStore() throws IOException, CertificateException {
+    public void createKeyStore() throws IOException, CertificateException, KeyStoreException, NoSuchAlgorithmException {
+        var ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        ks.load(null, null);
+
+        lock.writeLock().lock();
         try {
-            var ks = KeyStore.getInstance(KeyStore.getDefaultType());
-            ks.load(new FileInputStream(getFilePath()), getPassword());
-            return ks;
-        } catch (KeyStoreException | NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+            keyStore = ks;
+        } finally {
+            lock.writeLock().unlock();
         }
+
+        flush();
     }
 
-    private void saveKeyStore(KeyStore ks) throws IOException, CertificateException {
-        try {
-            ks.store(new FileOutputStream(getFilePath()), getPassword());
-        } catch (KeyStoreException | NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+    // Writes the resident key store to a temporary file and atomically swaps it in
+    public void flush() throws IOException, CertificateException {
+        synchronized (flushLock) {
+            var sample = Timer.start();
+            var bytes = new ByteArrayOutputStream();
+
+            lock.readLock().lock();
+            try {
+                if (keyStore == null) return;
+                keyStore.store(bytes, getPassword());
+            } catch (KeyStoreException | NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            var target = Paths.get(getFilePath()).toAbsolutePath();
+            var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, bytes.toByteArray());
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+                sample.stop(storeTimer);
+            }
         }
     }
 
-    public void createKeyStore() throws IOException, CertificateException, KeyStoreException, NoSuchAlgorithmException {
-        var ks = KeyStore.getInstance(KeyStore.getDefaultType());
-        ks.load(null, null);
+    private static X509Certificate get(KeyStore ks, String alias) throws KeyStoreException {
+        return ks.isKeyEntry(alias) ? (X509Certificate) ks.getCertificate(alias) : null;
+    }
+
+    private KeyStore getKeyStore() {
+        if (keyStore == null)
+            throw new IllegalStateException("Key store is not initialized.");
+        return keyStore;
+    }
 
-        try (var out = new FileOutputStream(getFilePath())) {
-            ks.store(out, getPassword());
+    private KeyStore loadKeyStore() throws IOException, CertificateException {
+        try (InputStream in = Files.newInputStream(Path.of(getFilePath()))) {
+            var ks = KeyStore.getInstance(KeyStore.getDefaultType());
+            ks.load(in, getPassword());
+            return ks;
+        } catch (KeyStoreException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -0,0 +1,13 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.entity.Renewal;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+
+public interface RenewalRepository extends JpaRepository<Renewal, String> {
+    Window<Renewal> findByNotAfterBetweenOrderByNotAfterAscAliasAsc(LocalDateTime from, LocalDateTime to, ScrollPosition position, Limit limit);
+}
@@ -0,0 +1,8 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.entity.Revocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RevocationRepository extends JpaRepository<Revocation, Long> {
+    boolean existsByAlias(String alias);
+}
@@ -0,0 +1,20 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.entity.StoredCertificate;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StoredCertificateRepository extends JpaRepository<StoredCertificate, String> {
+    interface ParentLink {
+        String getAlias();
+        String getParentAlias();
+    }
+
+    List<ParentLink> findAllBy();
+
+    Optional<StoredCertificate> findBySerialNumber(String serialNumber);
+
+    Optional<StoredCertificate> findFirstByUid(String uid);
+}
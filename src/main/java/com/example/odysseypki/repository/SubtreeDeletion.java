@@ -0,0 +1,7 @@
+package com.example.odysseypki.repository;
+
+import java.security.cert.X509Certificate;
+import java.util.Map;
+
+// Certificates removed with a subtree, in pre-order, and the parent alias each one had
+public record SubtreeDeletion(Map<String, X509Certificate> certificates, Map<String, String> parentAliases) {}
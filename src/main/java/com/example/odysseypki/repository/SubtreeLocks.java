@@ -0,0 +1,72 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Striped read-write locks keyed by alias. Writers into a subtree hold shared locks on the
+// path from the root to their parent, deleting a subtree holds an exclusive lock on its root.
+// Stripes are always taken in ascending order, so acquisitions never deadlock.
+@Component
+public class SubtreeLocks {
+    @Autowired
+    private OdysseyPkiProperties properties;
+
+    private ReadWriteLock[] stripes;
+
+    public interface Handle extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @PostConstruct
+    public void init() {
+        stripes = new ReadWriteLock[Math.max(1, properties.getLockStripes())];
+        for (int i = 0; i < stripes.length; ++i)
+            stripes[i] = new ReentrantReadWriteLock();
+    }
+
+    public Handle lock(Collection<String> shared, Collection<String> exclusive) {
+        var modes = new TreeMap<Integer, Boolean>();
+        for (var alias : shared)
+            modes.putIfAbsent(stripe(alias), false);
+        for (var alias : exclusive)
+            modes.put(stripe(alias), true);
+
+        var locks = new ArrayList<Lock>(modes.size());
+        for (var mode : modes.entrySet())
+            locks.add(mode.getValue() ? stripes[mode.getKey()].writeLock() : stripes[mode.getKey()].readLock());
+
+        return acquire(locks);
+    }
+
+    public Handle lockAll() {
+        var locks = new ArrayList<Lock>(stripes.length);
+        for (var stripe : stripes)
+            locks.add(stripe.writeLock());
+
+        return acquire(locks);
+    }
+
+    private static Handle acquire(List<Lock> locks) {
+        locks.forEach(Lock::lock);
+
+        return () -> {
+            for (int i = locks.size() - 1; i >= 0; --i)
+                locks.get(i).unlock();
+        };
+    }
+
+    private int stripe(String alias) {
+        return Math.floorMod(alias.hashCode(), stripes.length);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.entity.Certificate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.KeyPair;
+
+@Getter
+@AllArgsConstructor
+public class BatchIssuanceResult {
+    private int index;
+    private Certificate certificate;
+    private KeyPair keyPair;
+    private String error;
+
+    public static BatchIssuanceResult success(int index, Certificate certificate, KeyPair keyPair) {
+        return new BatchIssuanceResult(index, certificate, keyPair, null);
+    }
+
+    public static BatchIssuanceResult failure(int index, String error) {
+        return new BatchIssuanceResult(index, null, null, error);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.dto.CertificateDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded, least recently used alias keyed cache of mapped certificates, which never change
+// once issued. Entries remember their certificate, so a reused alias is never served a stale DTO.
+@Component
+public class CertificateDTOCache {
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > properties.getDtoCacheSize();
+        }
+    };
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private record Entry(X509Certificate certificate, CertificateDTO dto) {}
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("odyssey.dto.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("odyssey.dto.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("odyssey.dto.cache.size", this, CertificateDTOCache::size).register(meterRegistry);
+    }
+
+    public interface Mapper {
+        CertificateDTO map(String alias, X509Certificate certificate) throws IOException, CertificateEncodingException;
+    }
+
+    public CertificateDTO get(String alias, X509Certificate certificate, Mapper mapper) throws IOException, CertificateEncodingException {
+        synchronized (entries) {
+            var entry = entries.get(alias);
+            if (entry != null && entry.certificate().equals(certificate)) {
+                hits.incrementAndGet();
+                return entry.dto();
+            }
+        }
+
+        // Mapped outside the lock, the least recently used entry makes room once the cache is full
+        misses.incrementAndGet();
+        var dto = mapper.map(alias, certificate);
+        synchronized (entries) {
+            entries.put(alias, new Entry(certificate, dto));
+        }
+        return dto;
+    }
+
+    public void evict(Collection<String> aliases) {
+        synchronized (entries) {
+            aliases.forEach(entries::remove);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
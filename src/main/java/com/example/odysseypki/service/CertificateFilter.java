@@ -0,0 +1,40 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.entity.Certificate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+public class CertificateFilter {
+    private String issuerAlias;
+    private Date validFrom;
+    private Date validTo;
+    private Boolean isCa;
+    private Certificate.KeyUsageValue keyUsage;
+
+    public boolean matches(String parentAlias, X509Certificate certificate) {
+        if (issuerAlias != null && !issuerAlias.equals(parentAlias))
+            return false;
+
+        // Validity period has to overlap the requested window
+        if (validFrom != null && certificate.getNotAfter().before(validFrom))
+            return false;
+        if (validTo != null && certificate.getNotBefore().after(validTo))
+            return false;
+
+        if (isCa != null && isCa != (certificate.getBasicConstraints() >= 0))
+            return false;
+
+        if (keyUsage != null) {
+            // KeyUsageValue is declared in the order of the RFC 5280 key usage bits
+            var bits = certificate.getKeyUsage();
+            return bits != null && bits.length > keyUsage.ordinal() && bits[keyUsage.ordinal()];
+        }
+
+        return true;
+    }
+}
@@ -1,117 +1,298 @@
 package com.example.odysseypki.service;
 
+import com.example.odysseypki.OdysseyPkiProperties;
 import com.example.odysseypki.acl.AclRepository;
 import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.certificate.SerialNumberGenerator;
 import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.ArchivedCertificate;
 import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.entity.Revocation;
+import com.example.odysseypki.repository.ArchivedCertificateRepository;
 import com.example.odysseypki.repository.CertificateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.*;
 import java.security.cert.X509Certificate;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component
 public class CertificateService {
     private static final Long ROOT_EXPIRATION_MILLIS = 10 * 365 * 24 * 60 * 60 * 1000L; // 10 years
-    private static final String KEY_ALGORITHM = "RSA";
     public static final String ROOT_ALIAS = "root";
     public static final String MIDDLE_ALIAS = "middle";
     public static final String HTTPS_ALIAS = "https-certificate";
 
+    private record IssuerContext(X509Certificate certificate, PrivateKey privateKey) {}
+
     @Autowired
     private AclRepository aclRepository;
     @Autowired
     private CertificateRepository certificateRepository;
+    @Autowired
+    private KeyPairPool keyPairPool;
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private IssuerKeyCache issuerKeyCache;
+    @Autowired
+    private RevocationService revocationService;
+    @Autowired
+    private OcspService ocspService;
+    @Autowired
+    private SerialNumberGenerator serialNumberGenerator;
+    @Autowired
+    private CertificateDTOCache dtoCache;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ChainService chainService;
+    @Autowired
+    private ArchivedCertificateRepository archivedCertificateRepository;
 
 
     public Certificate createCaCertificate(CertificateCreationDTO dto) throws GeneralSecurityException, IOException, OperatorCreationException {
-        var parentAlias = dto.getParentAlias();
-        var commonName = dto.getCommonName();
-        var startDate = new Date(dto.getStartDate());
-        var endDate = new Date(dto.getEndDate());
-        var isHttpsCertificate = dto.getIsHttps();
-        var keyUsages = dto.getKeyUsages();
+        var parent = findIssuer(dto.getParentAlias());
+        var parentPrivateKey = loadIssuerKey(dto.getParentAlias());
+        if (parentPrivateKey == null) return null;
 
-        var parent = certificateRepository.find(parentAlias);
-        if (parent == null)
-            throw new IllegalArgumentException("Parent certificate with provided alias does not exist.");
+        var keyPair = keyPairPool.take(resolveKeyAlgorithm(dto.getKeyAlgorithm(), parent));
+        var certificate = buildCaCertificate(dto, parent, parentPrivateKey, keyPair);
 
-        if (parent.getBasicConstraints() < 0)
-            throw new IllegalArgumentException("Parent certificate is not a CA.");
+        persist(Map.of(dto.getParentAlias(), List.of(certificate)),
+                Map.of(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate())));
+        return certificate;
+    }
 
-        var parentPrivateKey = aclRepository.load(parentAlias, AclRepository.PRIVATE_KEYS_ACL);
+    public Certificate createHttpsCertificate(CertificateCreationDTO dto) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var parent = findIssuer(dto.getParentAlias());
+        var parentPrivateKey = loadIssuerKey(dto.getParentAlias());
         if (parentPrivateKey == null) return null;
 
-        var keyPair = generateKeyPair();
+        var keyPair = keyPairPool.take(resolveKeyAlgorithm(dto.getKeyAlgorithm(), parent));
+        var certificate = buildHttpsCertificate(dto, parent, parentPrivateKey, keyPair);
+
+        persist(Map.of(dto.getParentAlias(), List.of(certificate)),
+                Map.of(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate())));
+        return certificate;
+    }
+
+    public Certificate createEndEntityCertificate(CertificateCreationDTO dto) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var parent = findIssuer(dto.getParentAlias());
+        var parentPrivateKey = loadIssuerKey(dto.getParentAlias());
+        if (parentPrivateKey == null) return null;
+
+        var keyPair = keyPairPool.take(resolveKeyAlgorithm(dto.getKeyAlgorithm(), parent));
+        var certificate = buildEndEntityCertificate(dto, parent, parentPrivateKey, keyPair);
+
+        persist(Map.of(dto.getParentAlias(), List.of(certificate)),
+                Map.of(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate())));
+        return certificate;
+    }
+
+    // Issues against the requester's own key, so nothing is generated and no private key is written to the ACL
+    public Certificate createEndEntityCertificate(CertificateCreationDTO dto, PKCS10CertificationRequest csr) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var parent = findIssuer(dto.getParentAlias());
+        var parentPrivateKey = loadIssuerKey(dto.getParentAlias());
+        if (parentPrivateKey == null) return null;
 
-        var subjectName = Map.of("CN", commonName);
         var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
-        var certificate = new CertificateBuilder()
-                .withSubject(keyPair.getPublic(), X500NameFormatter.format(subjectName))
-                .withIssuer(decodePrivateKey(parentPrivateKey), parent.getPublicKey(), issuerName)
-                .withStartDate(startDate)
-                .withEndDate(endDate)
-                .withPrivateKey(isHttpsCertificate ? keyPair.getPrivate() : null)
-                .setCaCertificate(true)
-                .withKeyUsages(keyUsages)
-                .build();
+        var certificate = sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
+                .withCertificationRequest(csr, formatEndEntityName(dto))
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), issuerName)
+                .withStartDate(new Date(dto.getStartDate()))
+                .withEndDate(new Date(dto.getEndDate()))
+                .withKeyUsages(dto.getKeyUsages())
+                .withAltNames(dto.getEmail() == null ? List.of() : List.of(dto.getEmail())));
+
+        return certificateRepository.save(dto.getParentAlias(), certificate);
+    }
 
-        aclRepository.save(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate()), AclRepository.PRIVATE_KEYS_ACL);
-        return certificateRepository.save(parentAlias, certificate);
+    // Issues many certificates at once: every parent is resolved once, keys are
+    // generated and signed in parallel and everything is persisted in one commit
+    public List<BatchIssuanceResult> createBatch(List<CertificateCreationDTO> dtos) throws GeneralSecurityException, IOException {
+        var issuers = new HashMap<String, IssuerContext>();
+        var errors = new HashMap<String, String>();
+        var invalid = new HashMap<Integer, String>();
+
+        for (int i = 0; i < dtos.size(); ++i) {
+            var error = validate(dtos.get(i));
+            if (error != null)
+                invalid.put(i, error);
+        }
+
+        var parentAliases = IntStream.range(0, dtos.size())
+                .filter(i -> !invalid.containsKey(i))
+                .mapToObj(i -> dtos.get(i).getParentAlias())
+                .collect(Collectors.toSet());
+
+        for (var parentAlias : parentAliases) {
+            try {
+                var parent = findIssuer(parentAlias);
+                var parentPrivateKey = loadIssuerKey(parentAlias);
+                if (parentPrivateKey == null)
+                    throw new IllegalArgumentException("Parent certificate private key is not available.");
+
+                issuers.put(parentAlias, new IssuerContext(parent, parentPrivateKey));
+            } catch (IllegalArgumentException e) {
+                errors.put(parentAlias, e.getMessage());
+            }
+        }
+
+        var results = IntStream.range(0, dtos.size()).parallel()
+                .mapToObj(i -> invalid.containsKey(i)
+                        ? BatchIssuanceResult.failure(i, invalid.get(i))
+                        : issue(i, dtos.get(i), issuers, errors))
+                .toList();
+
+        var privateKeys = new LinkedHashMap<String, String>();
+        var certificates = new LinkedHashMap<String, List<Certificate>>();
+
+        for (var result : results) {
+            if (result.getCertificate() == null)
+                continue;
+
+            var certificate = result.getCertificate();
+            privateKeys.put(certificate.getAlias(), encodePrivateKey(result.getKeyPair().getPrivate()));
+            certificates.computeIfAbsent(dtos.get(result.getIndex()).getParentAlias(), k -> new ArrayList<>())
+                    .add(certificate);
+        }
+
+        persist(certificates, privateKeys);
+        return results;
     }
 
-    public Certificate createHttpsCertificate(CertificateCreationDTO dto) throws GeneralSecurityException, IOException, OperatorCreationException {
-        var parentAlias = dto.getParentAlias();
-        var commonName = dto.getCommonName();
-        var startDate = new Date(dto.getStartDate());
-        var endDate = new Date(dto.getEndDate());
-        var isHttpsCertificate = dto.getIsHttps();
-        var keyUsages = dto.getKeyUsages();
+    // Keys go to the ACL first so a stored certificate always has its key,
+    // they are taken out again when the certificates cannot be saved
+    private void persist(Map<String, List<Certificate>> certificates, Map<String, String> privateKeys) throws GeneralSecurityException, IOException {
+        aclRepository.saveAll(privateKeys);
+        try {
+            certificateRepository.saveAll(certificates);
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            aclRepository.deleteAll(privateKeys.keySet());
+            throw e;
+        }
+    }
 
-        var parent = certificateRepository.find(parentAlias);
-        if (parent == null)
-            throw new IllegalArgumentException("Parent certificate with provided alias does not exist.");
+    private static String validate(CertificateCreationDTO dto) {
+        if (dto.getParentAlias() == null)
+            return "Parent alias is required.";
+        if (dto.getCommonName() == null || dto.getCommonName().isBlank())
+            return "Common name is required.";
+        if (dto.getStartDate() == null || dto.getEndDate() == null)
+            return "Start and end date are required.";
+        if (dto.getStartDate() >= dto.getEndDate())
+            return "End date must be after start date.";
+        if (dto.getIsCa() == null || dto.getIsHttps() == null)
+            return "Certificate type is required.";
+        if (dto.getKeyUsages() == null)
+            return "Key usages are required.";
+        if (!dto.getIsCa() && !dto.getIsHttps() && dto.getEmail() == null)
+            return "Email is required for end entity certificates.";
+        return null;
+    }
 
-        if (parent.getBasicConstraints() < 0)
-            throw new IllegalArgumentException("Parent certificate is not a CA.");
+    private BatchIssuanceResult issue(int index, CertificateCreationDTO dto, Map<String, IssuerContext> issuers, Map<String, String> errors) {
+        var issuer = issuers.get(dto.getParentAlias());
+        if (issuer == null)
+            return BatchIssuanceResult.failure(index, errors.get(dto.getParentAlias()));
 
-        var parentPrivateKey = aclRepository.load(parentAlias, AclRepository.PRIVATE_KEYS_ACL);
-        if (parentPrivateKey == null) return null;
+        try {
+            var keyPair = keyPairPool.take(resolveKeyAlgorithm(dto.getKeyAlgorithm(), issuer.certificate()));
+            Certificate certificate;
+
+            if (dto.getIsCa())
+                certificate = buildCaCertificate(dto, issuer.certificate(), issuer.privateKey(), keyPair);
+            else if (dto.getIsHttps())
+                certificate = buildHttpsCertificate(dto, issuer.certificate(), issuer.privateKey(), keyPair);
+            else
+                certificate = buildEndEntityCertificate(dto, issuer.certificate(), issuer.privateKey(), keyPair);
+
+            return BatchIssuanceResult.success(index, certificate, keyPair);
+        } catch (IllegalArgumentException | GeneralSecurityException | IOException | OperatorCreationException e) {
+            return BatchIssuanceResult.failure(index, e.getMessage());
+        }
+    }
 
-        var keyPair = generateKeyPair();
+    private Certificate buildCaCertificate(CertificateCreationDTO dto, X509Certificate parent, PrivateKey parentPrivateKey, KeyPair keyPair) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var subjectName = Map.of("CN", dto.getCommonName());
+        var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
+        return sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
+                .withSubject(keyPair.getPublic(), X500NameFormatter.format(subjectName))
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), issuerName)
+                .withStartDate(new Date(dto.getStartDate()))
+                .withEndDate(new Date(dto.getEndDate()))
+                .withPrivateKey(dto.getIsHttps() ? keyPair.getPrivate() : null)
+                .setCaCertificate(true)
+                .withKeyUsages(dto.getKeyUsages()));
+    }
 
-        var subjectName = Map.of("CN", commonName);
+    private Certificate buildHttpsCertificate(CertificateCreationDTO dto, X509Certificate parent, PrivateKey parentPrivateKey, KeyPair keyPair) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var subjectName = Map.of("CN", dto.getCommonName());
         var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
-        var certificate = new CertificateBuilder()
+        return sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
                 .withSubject(keyPair.getPublic(), X500NameFormatter.format(subjectName))
-                .withIssuer(decodePrivateKey(parentPrivateKey), parent.getPublicKey(), issuerName)
-                .withStartDate(startDate)
-                .withEndDate(endDate)
-                .withPrivateKey(isHttpsCertificate ? keyPair.getPrivate() : null)
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), issuerName)
+                .withStartDate(new Date(dto.getStartDate()))
+                .withEndDate(new Date(dto.getEndDate()))
+                .withPrivateKey(dto.getIsHttps() ? keyPair.getPrivate() : null)
                 .setHttpsCertificate(true)
-                .withKeyUsages(keyUsages)
-                .withAltNames(List.of("localhost", "*localhost"))
-                .build();
+                .withKeyUsages(dto.getKeyUsages())
+                .withAltNames(List.of("localhost", "*localhost")));
+    }
 
-        aclRepository.save(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate()), AclRepository.PRIVATE_KEYS_ACL);
-        return certificateRepository.save(parentAlias, certificate);
+    private Certificate buildEndEntityCertificate(CertificateCreationDTO dto, X509Certificate parent, PrivateKey parentPrivateKey, KeyPair keyPair) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
+        return sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
+                .withSubject(keyPair.getPublic(), formatEndEntityName(dto))
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), issuerName)
+                .withStartDate(new Date(dto.getStartDate()))
+                .withEndDate(new Date(dto.getEndDate()))
+                .withPrivateKey(keyPair.getPrivate())
+                .withKeyUsages(dto.getKeyUsages())
+                .withAltNames(List.of(dto.getEmail())));
     }
 
-    public Certificate createEndEntityCertificate(CertificateCreationDTO dto) throws GeneralSecurityException, IOException, OperatorCreationException {
-        var parentAlias = dto.getParentAlias();
-        var commonName = dto.getCommonName();
-        var uid = dto.getUid();
-        var startDate = new Date(dto.getStartDate());
-        var endDate = new Date(dto.getEndDate());
-        var keyUsages = dto.getKeyUsages();
-        var email = dto.getEmail();
+    private static X500Name formatEndEntityName(CertificateCreationDTO dto) {
+        var subjectName = new HashMap<>(Map.of("CN", dto.getCommonName()));
+        if (dto.getUid() != null)
+            subjectName.put("UID", dto.getUid());
+        return X500NameFormatter.format(subjectName);
+    }
 
+    private Certificate sign(CertificateBuilder builder) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var sample = Timer.start();
+        try {
+            return builder.build();
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.sign", "type", "certificate"));
+        }
+    }
+
+    private PrivateKey loadIssuerKey(String alias) throws GeneralSecurityException, IOException {
+        return issuerKeyCache.get(alias);
+    }
+
+    private X509Certificate findIssuer(String parentAlias) throws GeneralSecurityException, IOException {
         var parent = certificateRepository.find(parentAlias);
         if (parent == null)
             throw new IllegalArgumentException("Parent certificate with provided alias does not exist.");
@@ -119,28 +300,7 @@ public class CertificateService {
         if (parent.getBasicConstraints() < 0)
             throw new IllegalArgumentException("Parent certificate is not a CA.");
 
-        var parentPrivateKey = aclRepository.load(parentAlias, AclRepository.PRIVATE_KEYS_ACL);
-        if (parentPrivateKey == null) return null;
-
-        var keyPair = generateKeyPair();
-
-        var subjectName = new HashMap<>(Map.of("CN", commonName));
-        if (uid != null)
-            subjectName.put("UID", uid);
-
-        var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
-        var certificate = new CertificateBuilder()
-                .withSubject(keyPair.getPublic(), X500NameFormatter.format(subjectName))
-                .withIssuer(decodePrivateKey(parentPrivateKey), parent.getPublicKey(), issuerName)
-                .withStartDate(startDate)
-                .withEndDate(endDate)
-                .withPrivateKey(keyPair.getPrivate())
-                .withKeyUsages(keyUsages)
-                .withAltNames(List.of(email))
-                .build();
-
-        aclRepository.save(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate()), AclRepository.PRIVATE_KEYS_ACL);
-        return certificateRepository.save(parentAlias, certificate);
+        return parent;
     }
 
     public Certificate create(String parentAlias, String alias, String subjectName, Date startDate, Date endDate, Boolean isCa, Boolean isHttps, List<String> keyUsages, List<String> altNames) throws GeneralSecurityException, IOException, OperatorCreationException {
@@ -151,15 +311,16 @@ public class CertificateService {
         if (parent.getBasicConstraints() < 0)
             throw new IllegalArgumentException("Parent certificate is not a CA.");
 
-        var parentPrivateKey = aclRepository.load(parentAlias, AclRepository.PRIVATE_KEYS_ACL);
+        var parentPrivateKey = loadIssuerKey(parentAlias);
         if (parentPrivateKey == null) return null;
 
-        var keyPair = generateKeyPair();
+        var keyPair = keyPairPool.take(KeyAlgorithm.of(parent.getPublicKey()));
 
         var issuerName = X500NameFormatter.format(parent.getSubjectX500Principal());
-        var certificate = new CertificateBuilder()
+        var certificate = sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
                 .withSubject(keyPair.getPublic(), X500NameFormatter.format(subjectName))
-                .withIssuer(decodePrivateKey(parentPrivateKey), parent.getPublicKey(), issuerName)
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), issuerName)
                 .withStartDate(startDate)
                 .withEndDate(endDate)
                 .withAlias(alias)
@@ -167,10 +328,9 @@ public class CertificateService {
                 .setCaCertificate(isCa)
                 .setHttpsCertificate(isHttps)
                 .withKeyUsages(keyUsages)
-                .withAltNames(altNames)
-                .build();
+                .withAltNames(altNames));
 
-        aclRepository.save(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate()), AclRepository.PRIVATE_KEYS_ACL);
+        aclRepository.save(certificate.getAlias(), encodePrivateKey(keyPair.getPrivate()));
         return certificateRepository.save(parentAlias, certificate);
     }
 
@@ -198,11 +358,12 @@ public class CertificateService {
     }
 
     public void createRoot() throws IOException, GeneralSecurityException, OperatorCreationException {
-        var keyPair = generateKeyPair();
+        var keyPair = keyPairPool.take(properties.getKeyAlgorithm());
 
         // SELF SIGNED SO THERE IS NO PARENT PRIVATE KEY
         var dn = X500NameFormatter.format("CN=Odyssey PKI Root, O=Odyssey, OU=Odyssey PKI, L=Novi Sad, C=Serbia");
-        var certificate = new CertificateBuilder()
+        var certificate = sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
                 .withSubject(keyPair.getPublic(), dn)
                 .withIssuer(keyPair.getPrivate(), keyPair.getPublic(), dn)
                 .withExpiration(ROOT_EXPIRATION_MILLIS)
@@ -212,18 +373,136 @@ public class CertificateService {
                         Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name(),
                         Certificate.KeyUsageValue.NON_REPUDIATION.name(),
                         Certificate.KeyUsageValue.CERTIFICATE_SIGN.name(),
-                        Certificate.KeyUsageValue.CRL_SIGN.name()))
-                .build();
+                        Certificate.KeyUsageValue.CRL_SIGN.name())));
 
-        aclRepository.save(ROOT_ALIAS, encodePrivateKey(keyPair.getPrivate()), AclRepository.PRIVATE_KEYS_ACL);
+        aclRepository.save(ROOT_ALIAS, encodePrivateKey(keyPair.getPrivate()));
         certificateRepository.saveRoot(certificate);
+        dtoCache.clear();
+        chainService.clear();
     }
 
-    public List<X509Certificate> delete(String alias) throws IOException, GeneralSecurityException {
+    public Map<String, X509Certificate> delete(String alias) throws IOException, GeneralSecurityException {
         if (ROOT_ALIAS.equals(alias))
             throw new IllegalArgumentException("Root certificate cannot be deleted.");
 
-        return certificateRepository.delete(alias);
+        var deletion = certificateRepository.delete(alias);
+        var deleted = deletion.certificates();
+        aclRepository.deleteAll(deleted.keySet());
+        issuerKeyCache.invalidate(deleted.keySet());
+        dtoCache.evict(deleted.keySet());
+        chainService.evict(deleted.keySet());
+
+        revocationService.revokeAll(deletion.parentAliases(), deleted, CRLReason.cessationOfOperation);
+        revocationService.forgetIssuers(deleted.keySet());
+        ocspService.invalidate(deleted.values().stream()
+                .filter(Objects::nonNull)
+                .map(X509Certificate::getSerialNumber)
+                .toList());
+        return deleted;
+    }
+
+    // Issues a successor under the same parent with the same subject, key, extensions and lifetime
+    public Certificate renew(String alias) throws IOException, GeneralSecurityException, OperatorCreationException {
+        var certificate = find(alias);
+        if (certificate == null)
+            throw new IllegalArgumentException("Certificate with provided alias does not exist.");
+
+        var parentAlias = findParentAlias(alias);
+        if (parentAlias == null)
+            throw new IllegalArgumentException("Root certificate cannot be renewed.");
+
+        var parent = findIssuer(parentAlias);
+        var parentPrivateKey = loadIssuerKey(parentAlias);
+        if (parentPrivateKey == null) return null;
+
+        // Certificates issued from a CSR have no private key in the ACL
+        var privateKey = aclRepository.load(alias);
+        var altNames = new ArrayList<String>();
+        var isHttps = false;
+        if (certificate.getSubjectAlternativeNames() != null)
+            for (var altName : certificate.getSubjectAlternativeNames()) {
+                altNames.add((String) altName.get(1));
+                isHttps |= (Integer) altName.get(0) == GeneralName.dNSName;
+            }
+        if (isHttps && privateKey == null)
+            throw new IllegalArgumentException("HTTPS certificate private key is not available.");
+
+        var keyUsages = new ArrayList<String>();
+        var bits = certificate.getKeyUsage();
+        for (var keyUsage : Certificate.KeyUsageValue.values())
+            if (bits != null && bits.length > keyUsage.ordinal() && bits[keyUsage.ordinal()])
+                keyUsages.add(keyUsage.name());
+
+        var lifetime = certificate.getNotAfter().getTime() - certificate.getNotBefore().getTime();
+        var startDate = new Date();
+        var renewed = sign(new CertificateBuilder()
+                .withSerialNumberGenerator(serialNumberGenerator)
+                .withSubject(certificate.getPublicKey(), X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded()))
+                .withIssuer(parentPrivateKey, parent.getPublicKey(), X500NameFormatter.format(parent.getSubjectX500Principal()))
+                .withStartDate(startDate)
+                .withEndDate(new Date(startDate.getTime() + lifetime))
+                .withPrivateKey(isHttps ? IssuerKeyCache.decodePrivateKey(privateKey) : null)
+                .setCaCertificate(certificate.getBasicConstraints() >= 0)
+                .setHttpsCertificate(isHttps)
+                .withKeyUsages(keyUsages)
+                .withAltNames(altNames));
+
+        if (privateKey != null)
+            aclRepository.save(renewed.getAlias(), privateKey);
+        return certificateRepository.save(parentAlias, renewed);
+    }
+
+    // Moves expired certificates without children into the archive. Unlike delete nothing is
+    // revoked, an expired certificate no longer has to appear on a CRL.
+    public List<ArchivedCertificate> archive(List<String> aliases) throws IOException, GeneralSecurityException {
+        var now = new Date();
+        var archived = new ArrayList<ArchivedCertificate>();
+        var removed = new ArrayList<String>();
+
+        for (var alias : aliases) {
+            var certificate = find(alias);
+            if (certificate == null || ROOT_ALIAS.equals(alias) || !certificate.getNotAfter().before(now)
+                    || certificateRepository.hasChildren(alias))
+                continue;
+
+            var parentAlias = findParentAlias(alias);
+            var deleted = certificateRepository.delete(alias).certificates();
+            if (!deleted.containsKey(alias))
+                continue;
+
+            removed.add(alias);
+            archived.add(new ArchivedCertificate(alias, parentAlias,
+                    certificate.getSerialNumber().toString(),
+                    LocalDateTime.ofInstant(certificate.getNotAfter().toInstant(), ZoneId.systemDefault()),
+                    LocalDateTime.now(),
+                    Base64.getEncoder().encodeToString(certificate.getEncoded())));
+        }
+
+        if (removed.isEmpty())
+            return archived;
+
+        aclRepository.deleteAll(removed);
+        issuerKeyCache.invalidate(removed);
+        dtoCache.evict(removed);
+        chainService.evict(removed);
+        revocationService.forgetIssuers(removed);
+        ocspService.invalidate(archived.stream()
+                .map(a -> new BigInteger(a.getSerialNumber()))
+                .toList());
+        return archivedCertificateRepository.saveAll(archived);
+    }
+
+    public Revocation revoke(String alias, int reason) throws IOException, GeneralSecurityException {
+        if (ROOT_ALIAS.equals(alias))
+            throw new IllegalArgumentException("Root certificate cannot be revoked.");
+
+        var certificate = find(alias);
+        if (certificate == null)
+            throw new IllegalArgumentException("Certificate with provided alias does not exist.");
+
+        var revocation = revocationService.revoke(findParentAlias(alias), alias, certificate, reason);
+        ocspService.invalidate(List.of(certificate.getSerialNumber()));
+        return revocation;
     }
 
     public X509Certificate find(String alias) throws IOException, GeneralSecurityException {
@@ -234,45 +513,84 @@ public class CertificateService {
         return certificateRepository.findAll();
     }
 
-    public X509Certificate findByUid(Long uid) throws GeneralSecurityException, IOException {
-        for (var certificate : findAll().values())
-            if (certificate.getSubjectX500Principal().getName().contains("UID=" + uid))
-                return certificate;
-        return null;
+    // Certificates in alias order after the cursor, at most limit of them
+    public Map<String, X509Certificate> findPage(CertificateFilter filter, String cursor, int limit) throws GeneralSecurityException, IOException {
+        var certificates = new LinkedHashMap<String, X509Certificate>();
+        forEach(filter, cursor, (alias, certificate) -> {
+            certificates.put(alias, certificate);
+            return certificates.size() < limit;
+        });
+        return certificates;
     }
 
-    public String findParentAlias(String alias) throws IOException {
-        return certificateRepository.findParentAlias(alias);
+    @FunctionalInterface
+    public interface CertificateVisitor {
+        boolean visit(String alias, X509Certificate certificate) throws GeneralSecurityException, IOException;
     }
 
-    private static KeyPair generateKeyPair() {
-        try {
-            var keyGen = KeyPairGenerator.getInstance(KEY_ALGORITHM);
-            var random = SecureRandom.getInstance("SHA1PRNG", "SUN");
-            keyGen.initialize(2048, random);
-            return keyGen.generateKeyPair();
-        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
-            throw new RuntimeException(e);
+    // Visits matching certificates one at a time until the visitor returns false
+    public void forEach(CertificateFilter filter, String cursor, CertificateVisitor visitor) throws GeneralSecurityException, IOException {
+        for (var alias : certificateRepository.findAliasesAfter(cursor)) {
+            var certificate = find(alias);
+            if (certificate == null || !filter.matches(findParentAlias(alias), certificate))
+                continue;
+
+            if (!visitor.visit(alias, certificate))
+                return;
         }
     }
 
-    private static PrivateKey decodePrivateKey(String key) {
-        try {
-            var keySpec = new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key));
-            var kf = KeyFactory.getInstance(KEY_ALGORITHM);
-            return kf.generatePrivate(keySpec);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException(e);
+    // The latest of the certificates carrying the UID, a renewed certificate wins over its predecessor
+    public X509Certificate findByUid(Long uid) throws GeneralSecurityException, IOException {
+        X509Certificate latest = null;
+        for (var certificate : findAllByAlias(certificateRepository.findAliasesByUid(String.valueOf(uid))).values())
+            if (latest == null || certificate.getNotAfter().after(latest.getNotAfter()))
+                latest = certificate;
+        return latest;
+    }
+
+    public Map<String, X509Certificate> findBySerialNumber(BigInteger serialNumber) throws GeneralSecurityException, IOException {
+        var alias = certificateRepository.findAliasBySerialNumber(serialNumber);
+        return findAllByAlias(alias == null ? Set.of() : Set.of(alias));
+    }
+
+    public Map<String, X509Certificate> findByCommonName(String commonName) throws GeneralSecurityException, IOException {
+        return findAllByAlias(certificateRepository.findAliasesByCommonName(commonName));
+    }
+
+    public Map<String, X509Certificate> findByEmail(String email) throws GeneralSecurityException, IOException {
+        return findAllByAlias(certificateRepository.findAliasesByEmail(email));
+    }
+
+    // Certificates with notAfter within the window, earliest first
+    public Map<String, X509Certificate> findExpiring(long withinMillis, int limit) throws GeneralSecurityException, IOException {
+        var now = System.currentTimeMillis();
+        return findAllByAlias(certificateRepository.findAliasesExpiringBetween(now, now + withinMillis, limit));
+    }
+
+    private Map<String, X509Certificate> findAllByAlias(Collection<String> aliases) throws GeneralSecurityException, IOException {
+        var certificates = new LinkedHashMap<String, X509Certificate>();
+        for (var alias : aliases) {
+            var certificate = find(alias);
+            if (certificate != null)
+                certificates.put(alias, certificate);
         }
+        return certificates;
+    }
+
+    public String findParentAlias(String alias) {
+        return certificateRepository.findParentAlias(alias);
+    }
+
+    // Requested algorithm, otherwise the one of the issuing CA
+    private static KeyAlgorithm resolveKeyAlgorithm(String requested, X509Certificate parent) {
+        if (requested != null)
+            return KeyAlgorithm.valueOf(requested);
+        return KeyAlgorithm.of(parent.getPublicKey());
     }
 
     private static String encodePrivateKey(PrivateKey key) {
-        try {
-            var kf = KeyFactory.getInstance(KEY_ALGORITHM);
-            var keySpec = kf.getKeySpec(key, PKCS8EncodedKeySpec.class);
-            return Base64.getEncoder().encodeToString(keySpec.getEncoded());
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException(e);
-        }
+        // PKCS#8 for every supported key algorithm
+        return Base64.getEncoder().encodeToString(key.getEncoded());
     }
 }
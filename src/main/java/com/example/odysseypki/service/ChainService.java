@@ -0,0 +1,154 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.repository.CertificateRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateNotYetValidException;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Builds chains from the alias tree and validates them. Paths from a CA up to the root are
+// cached once verified, so validating a leaf only checks the leaf against its issuer.
+@Service
+public class ChainService {
+    @Autowired
+    private CertificateRepository certificateRepository;
+    @Autowired
+    private RevocationService revocationService;
+    @Autowired
+    private OdysseyPkiProperties properties;
+
+    private final Map<String, VerifiedPath> paths = new ConcurrentHashMap<>();
+
+    // Certificates from the CA up to the root, trusted until the first of them expires
+    private record VerifiedPath(List<X509Certificate> certificates, Date notAfter) {}
+
+    // Leaf first, root last, null when the alias does not exist
+    public List<X509Certificate> findChain(String alias) throws GeneralSecurityException, IOException {
+        var chain = new ArrayList<X509Certificate>();
+
+        for (var a = alias; a != null; a = certificateRepository.findParentAlias(a)) {
+            var certificate = certificateRepository.find(a);
+            if (certificate == null)
+                return chain.isEmpty() ? null : chain;
+            chain.add(certificate);
+        }
+
+        return chain;
+    }
+
+    // Problems found along the chain, empty when it is valid and null when the alias does not exist
+    public List<String> validate(String alias) throws GeneralSecurityException, IOException {
+        var certificate = certificateRepository.find(alias);
+        if (certificate == null)
+            return null;
+
+        var problems = new ArrayList<String>();
+        var now = new Date();
+        var chain = new ArrayList<>(List.of(certificate));
+
+        var parentAlias = certificateRepository.findParentAlias(alias);
+        if (parentAlias == null) {
+            checkSignature(alias, certificate, certificate, problems);
+            checkIssuer(alias, certificate, problems);
+        } else {
+            var path = findVerifiedPath(parentAlias, now, problems);
+            if (path != null) {
+                checkSignature(alias, certificate, path.certificates().get(0), problems);
+                chain.addAll(path.certificates());
+            }
+        }
+        checkValidity(alias, certificate, now, problems);
+
+        // Revocation is never cached, a revoked intermediate invalidates every chain through it
+        for (var c : chain)
+            if (revocationService.findBySerialNumber(c.getSerialNumber()) != null)
+                problems.add("Certificate " + c.getSerialNumber() + " is revoked.");
+
+        return problems;
+    }
+
+    public void evict(Collection<String> aliases) {
+        aliases.forEach(paths::remove);
+    }
+
+    public void clear() {
+        paths.clear();
+    }
+
+    private VerifiedPath findVerifiedPath(String alias, Date now, List<String> problems) throws GeneralSecurityException, IOException {
+        var cached = paths.get(alias);
+        if (cached != null && cached.notAfter().after(now))
+            return cached;
+
+        var certificate = certificateRepository.find(alias);
+        if (certificate == null) {
+            problems.add("Issuer " + alias + " does not exist.");
+            return null;
+        }
+
+        var found = problems.size();
+        var certificates = new ArrayList<>(List.of(certificate));
+        var notAfter = certificate.getNotAfter();
+
+        var parentAlias = certificateRepository.findParentAlias(alias);
+        if (parentAlias == null) {
+            checkSignature(alias, certificate, certificate, problems);
+        } else {
+            var parent = findVerifiedPath(parentAlias, now, problems);
+            if (parent == null)
+                return null;
+
+            checkSignature(alias, certificate, parent.certificates().get(0), problems);
+            certificates.addAll(parent.certificates());
+            if (parent.notAfter().before(notAfter))
+                notAfter = parent.notAfter();
+        }
+        checkIssuer(alias, certificate, problems);
+        checkValidity(alias, certificate, now, problems);
+
+        if (problems.size() > found)
+            return null;
+
+        var path = new VerifiedPath(List.copyOf(certificates), notAfter);
+        if (paths.size() < properties.getPathCacheSize())
+            paths.put(alias, path);
+        return path;
+    }
+
+    private static void checkSignature(String alias, X509Certificate certificate, X509Certificate issuer, List<String> problems) {
+        try {
+            certificate.verify(issuer.getPublicKey());
+        } catch (GeneralSecurityException e) {
+            problems.add("Signature of " + alias + " does not verify: " + e.getMessage());
+        }
+    }
+
+    // KeyUsageValue is declared in the order of the RFC 5280 key usage bits
+    private static void checkIssuer(String alias, X509Certificate certificate, List<String> problems) {
+        if (certificate.getBasicConstraints() < 0)
+            problems.add("Issuer " + alias + " is not a CA.");
+
+        var keyUsage = certificate.getKeyUsage();
+        var bit = Certificate.KeyUsageValue.CERTIFICATE_SIGN.ordinal();
+        if (keyUsage != null && (keyUsage.length <= bit || !keyUsage[bit]))
+            problems.add("Issuer " + alias + " is not allowed to sign certificates.");
+    }
+
+    private static void checkValidity(String alias, X509Certificate certificate, Date now, List<String> problems) {
+        try {
+            certificate.checkValidity(now);
+        } catch (CertificateExpiredException e) {
+            problems.add("Certificate " + alias + " has expired.");
+        } catch (CertificateNotYetValidException e) {
+            problems.add("Certificate " + alias + " is not yet valid.");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.entity.ArchivedCertificate;
+import com.example.odysseypki.entity.Renewal;
+import com.example.odysseypki.repository.CertificateIndex;
+import com.example.odysseypki.repository.CertificateRepository;
+import com.example.odysseypki.repository.RenewalRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Renews flagged certificates that enter the renewal window and archives expired ones.
+// Renewals come from the flagged rows and archive candidates from the expiry index, both in
+// expiry order and bounded per pass, the key store is never scanned.
+@Service
+public class ExpiryService {
+    @Autowired
+    private CertificateService certificateService;
+    @Autowired
+    private CertificateRepository certificateRepository;
+    @Autowired
+    private RenewalRepository renewalRepository;
+    @Autowired
+    private OdysseyPkiProperties properties;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "expiry-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        var interval = properties.getExpiryScanIntervalMillis();
+        scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public void flagForRenewal(String alias, boolean flag) throws GeneralSecurityException, IOException {
+        var certificate = certificateService.find(alias);
+        if (certificate == null)
+            throw new IllegalArgumentException("Certificate with provided alias does not exist.");
+
+        if (flag)
+            renewalRepository.save(new Renewal(alias, toLocalDateTime(certificate.getNotAfter().getTime()), LocalDateTime.now()));
+        else if (renewalRepository.existsById(alias))
+            renewalRepository.deleteById(alias);
+    }
+
+    public void run() {
+        try {
+            renewFlagged();
+            archiveExpired();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Flagged certificates are walked in expiry order, rows that could not be renewed are paged
+    // past so they do not hold back the rest. The flag moves to the successor, so it keeps being
+    // renewed and the predecessor is left to expire.
+    private void renewFlagged() throws GeneralSecurityException, IOException {
+        var now = System.currentTimeMillis();
+        var from = toLocalDateTime(now);
+        var to = toLocalDateTime(now + properties.getRenewalWindowMillis());
+        var renewedCount = 0;
+        ScrollPosition position = ScrollPosition.keyset();
+
+        while (renewedCount < properties.getExpiryBatchSize()) {
+            var page = renewalRepository.findByNotAfterBetweenOrderByNotAfterAscAliasAsc(
+                    from, to, position, Limit.of(properties.getExpiryBatchSize() - renewedCount));
+            if (page.isEmpty())
+                return;
+
+            for (var renewal : page) {
+                var certificate = certificateService.find(renewal.getAlias());
+                if (certificate == null) {
+                    renewalRepository.delete(renewal);
+                    continue;
+                }
+
+                // The window is capped at half the lifetime, so a successor living shorter than the
+                // window is not renewed again until it reaches its own renewal point
+                var lifetime = certificate.getNotAfter().getTime() - certificate.getNotBefore().getTime();
+                if (certificate.getNotAfter().getTime() - now > Math.min(properties.getRenewalWindowMillis(), lifetime / 2))
+                    continue;
+
+                try {
+                    var renewed = certificateService.renew(renewal.getAlias());
+                    if (renewed == null)
+                        continue;
+
+                    renewalRepository.delete(renewal);
+                    renewalRepository.save(new Renewal(renewed.getAlias(),
+                            toLocalDateTime(renewed.getX509Certificate().getNotAfter().getTime()), LocalDateTime.now()));
+                    renewedCount++;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            if (!page.hasNext())
+                return;
+            position = page.positionAt(page.size() - 1);
+        }
+    }
+
+    // Root and expired CAs that still have children are skipped, the cursor moves past them so
+    // they never take up a whole batch
+    private void archiveExpired() throws GeneralSecurityException, IOException {
+        var now = System.currentTimeMillis();
+        var archivedCount = 0;
+        CertificateIndex.Expiry cursor = null;
+
+        while (archivedCount < properties.getExpiryBatchSize()) {
+            var page = certificateRepository.findExpiriesAfter(cursor, now, properties.getExpiryBatchSize() - archivedCount);
+            if (page.isEmpty())
+                return;
+            cursor = page.get(page.size() - 1);
+
+            var archived = certificateService.archive(page.stream().map(CertificateIndex.Expiry::alias).toList());
+            renewalRepository.deleteAllById(archived.stream().map(ArchivedCertificate::getAlias).toList());
+            archivedCount += archived.size();
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
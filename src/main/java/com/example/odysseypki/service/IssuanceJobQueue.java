@@ -0,0 +1,236 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.entity.Request;
+import com.example.odysseypki.repository.RequestRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Issues certificates for accepted requests on a bounded worker pool. Progress is kept on the
+// request itself, failed attempts are retried with a growing delay until the attempt limit.
+@Service
+public class IssuanceJobQueue {
+    @Autowired
+    private RequestRepository requestRepository;
+    @Autowired
+    private CertificateService certificateService;
+    @Autowired
+    private OdysseyPkiProperties properties;
+
+    private ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "issuance-retries");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, CompletableFuture<Request>> waiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        var threadCount = new AtomicInteger(0);
+        var workerCount = Math.max(1, properties.getIssuanceWorkers());
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getIssuanceQueueSize())), r -> {
+                    var thread = new Thread(r, "issuance-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retries.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // Jobs left unfinished by a previous run are picked up again
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        for (var status : List.of(Request.IssuanceStatus.QUEUED, Request.IssuanceStatus.RUNNING))
+            for (var request : requestRepository.findAllByIssuanceStatus(status))
+                enqueue(request.getId());
+    }
+
+    public Request submit(Request request) {
+        request.setIssuanceStatus(Request.IssuanceStatus.QUEUED);
+        request.setIssuanceAttempts(0);
+        request.setIssuanceError(null);
+        var saved = requestRepository.save(request);
+
+        enqueue(saved.getId());
+        return saved;
+    }
+
+    // Completes once the job is issued or has failed for good, or with null after the timeout
+    public CompletableFuture<Request> awaitCompletion(Long id, long timeoutMillis) {
+        var waiter = waiters.computeIfAbsent(id, k -> new CompletableFuture<>());
+
+        // The job may have finished before the waiter was registered
+        var request = requestRepository.findById(id).orElse(null);
+        if (request == null || isFinished(request)) {
+            waiters.remove(id, waiter);
+            waiter.complete(request);
+        }
+
+        return waiter.copy().completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void enqueue(Long id) {
+        try {
+            workers.execute(() -> process(id));
+        } catch (RejectedExecutionException e) {
+            // Queue is full, the job stays queued and is offered again later without using up an attempt
+            if (!retries.isShutdown())
+                retries.schedule(() -> enqueue(id), properties.getIssuanceRetryDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void process(Long id) {
+        var request = requestRepository.findById(id).orElse(null);
+        if (request == null || request.getIssuanceStatus() == null || isFinished(request))
+            return;
+
+        var attempt = (request.getIssuanceAttempts() == null ? 0 : request.getIssuanceAttempts()) + 1;
+        request.setIssuanceStatus(Request.IssuanceStatus.RUNNING);
+        request.setIssuanceAttempts(attempt);
+        requestRepository.save(request);
+
+        try {
+            // A previous attempt may have stored the certificate and stopped before the request was saved
+            var issuedAlias = findIssued(request);
+            if (issuedAlias != null) {
+                request.setIssuanceStatus(Request.IssuanceStatus.ISSUED);
+                request.setCertificateAlias(issuedAlias);
+                request.setIssuanceError(null);
+                complete(id, request);
+                return;
+            }
+
+            Certificate certificate;
+            if (request.getCsr() == null) {
+                // Generated keys follow the issuer's algorithm
+                var issuer = certificateService.find(properties.getRequestIssuerAlias());
+                if (issuer == null)
+                    throw new IllegalStateException("Issuer certificate is not available.");
+                certificate = certificateService.createEndEntityCertificate(
+                        createDTO(request, KeyAlgorithm.of(issuer.getPublicKey())));
+            } else {
+                var csr = RequestService.decodeCsr(request.getCsr());
+                var publicKey = CertificateBuilder.verifyCertificationRequest(csr).getPublicKey();
+                certificate = certificateService.createEndEntityCertificate(
+                        createDTO(request, KeyAlgorithm.of(publicKey)), csr);
+            }
+            if (certificate == null)
+                throw new IllegalStateException("Issuer private key is not available.");
+
+            request.setIssuanceStatus(Request.IssuanceStatus.ISSUED);
+            request.setCertificateAlias(certificate.getAlias());
+            request.setIssuanceError(null);
+        } catch (Exception e) {
+            request.setIssuanceError(e.getMessage());
+            // Invalid requests and a missing issuer fail the same way on every attempt
+            var permanent = e instanceof IllegalArgumentException || e instanceof IllegalStateException;
+            if (!permanent && attempt < properties.getIssuanceMaxAttempts()) {
+                request.setIssuanceStatus(Request.IssuanceStatus.QUEUED);
+                requestRepository.save(request);
+                retries.schedule(() -> enqueue(id),
+                        properties.getIssuanceRetryDelayMillis() << (attempt - 1), TimeUnit.MILLISECONDS);
+                return;
+            }
+            request.setIssuanceStatus(Request.IssuanceStatus.FAILED);
+        }
+
+        complete(id, request);
+    }
+
+    private void complete(Long id, Request request) {
+        var saved = requestRepository.save(request);
+        var waiter = waiters.remove(id);
+        if (waiter != null)
+            waiter.complete(saved);
+    }
+
+    // Certificate issued for this request by an earlier attempt: under the request issuer with the
+    // requested names, not valid before the request was made and for the requested key, if any
+    private String findIssued(Request request) throws GeneralSecurityException, IOException {
+        if (request.getCertificateAlias() != null && certificateService.find(request.getCertificateAlias()) != null)
+            return request.getCertificateAlias();
+
+        var created = request.getDate() == null ? null
+                : Date.from(request.getDate().atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.SECONDS));
+        var publicKey = request.getCsr() == null ? null
+                : RequestService.decodeCsr(request.getCsr()).getSubjectPublicKeyInfo().getEncoded();
+
+        for (var entry : certificateService.findByCommonName(request.getCommonName()).entrySet()) {
+            var certificate = entry.getValue();
+            var uids = X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded()).getRDNs(BCStyle.UID);
+            var uid = uids.length == 0 ? null : IETFUtils.valueToString(uids[0].getFirst().getValue());
+            if (!Objects.equals(uid, request.getUid()))
+                continue;
+            if (created != null && certificate.getNotBefore().before(created))
+                continue;
+            if (publicKey != null && !Arrays.equals(publicKey, certificate.getPublicKey().getEncoded()))
+                continue;
+            if (properties.getRequestIssuerAlias().equals(certificateService.findParentAlias(entry.getKey())))
+                return entry.getKey();
+        }
+        return null;
+    }
+
+    private CertificateCreationDTO createDTO(Request request, KeyAlgorithm keyAlgorithm) {
+        var now = System.currentTimeMillis();
+        return new CertificateCreationDTO(
+                properties.getRequestIssuerAlias(),
+                request.getCommonName(),
+                request.getUid(),
+                request.getEmail(),
+                now,
+                now + properties.getRequestValidityMillis(),
+                false,
+                false,
+                keyUsages(keyAlgorithm),
+                null);
+    }
+
+    // Key encipherment only applies to RSA keys, EC keys agree on keys instead and Ed25519 keys only sign
+    private static List<String> keyUsages(KeyAlgorithm keyAlgorithm) {
+        switch (keyAlgorithm) {
+            case RSA_2048:
+                return List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name(),
+                        Certificate.KeyUsageValue.KEY_ENCIPHERMENT.name());
+            case ED25519:
+                return List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name());
+            default:
+                return List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name(),
+                        Certificate.KeyUsageValue.KEY_AGREEMENT.name());
+        }
+    }
+
+    private static boolean isFinished(Request request) {
+        return request.getIssuanceStatus() == Request.IssuanceStatus.ISSUED
+                || request.getIssuanceStatus() == Request.IssuanceStatus.FAILED;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.acl.AclRepository;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.openssl.PEMException;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded, TTL-evicting cache of decoded CA private keys keyed by alias
+@Component
+public class IssuerKeyCache {
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private AclRepository aclRepository;
+
+    private record Entry(PrivateKey privateKey, long expiresAt) {}
+
+    // Bumped by every invalidation, guarded by entries
+    private long generation;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > properties.getIssuerKeyCacheSize();
+        }
+    };
+
+    public PrivateKey get(String alias) throws GeneralSecurityException, IOException {
+        var now = System.currentTimeMillis();
+        long loadedGeneration;
+
+        synchronized (entries) {
+            var entry = entries.get(alias);
+            if (entry != null && entry.expiresAt() > now)
+                return entry.privateKey();
+            loadedGeneration = generation;
+        }
+
+        var encoded = aclRepository.load(alias);
+        if (encoded == null)
+            return null;
+
+        var privateKey = decodePrivateKey(encoded);
+
+        // A key invalidated while it was being loaded is returned to this caller but not cached
+        synchronized (entries) {
+            if (generation == loadedGeneration)
+                entries.put(alias, new Entry(privateKey, now + properties.getIssuerKeyCacheTtlMillis()));
+        }
+        return privateKey;
+    }
+
+    public void invalidate(Collection<String> aliases) {
+        synchronized (entries) {
+            aliases.forEach(entries::remove);
+            generation++;
+        }
+    }
+
+    public static PrivateKey decodePrivateKey(String key) {
+        try {
+            var keyInfo = PrivateKeyInfo.getInstance(Base64.getDecoder().decode(key));
+            return new JcaPEMKeyConverter().setProvider("BC").getPrivateKey(keyInfo);
+        } catch (PEMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
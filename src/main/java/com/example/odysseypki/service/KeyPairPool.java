@@ -0,0 +1,144 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded pools of pre-generated key pairs, one per key algorithm,
+// refilled in the background whenever they drop below the low-water mark
+@Component
+public class KeyPairPool {
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<KeyAlgorithm, Slot> slots = new ConcurrentHashMap<>();
+    private ExecutorService workers;
+    private int workerCount;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong fallbacks = new AtomicLong(0);
+
+    private static class Slot {
+        private final BlockingQueue<KeyPair> pool;
+        private final AtomicInteger activeFillers = new AtomicInteger(0);
+
+        private Slot(int capacity) {
+            pool = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        workerCount = properties.getKeyPoolWorkers() > 0
+                ? properties.getKeyPoolWorkers()
+                : Runtime.getRuntime().availableProcessors();
+
+        var threadCount = new AtomicInteger(0);
+        workers = Executors.newFixedThreadPool(workerCount, r -> {
+            var thread = new Thread(r, "key-pair-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        FunctionCounter.builder("odyssey.keypair.pool.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("odyssey.keypair.pool.fallbacks", fallbacks, AtomicLong::get).register(meterRegistry);
+
+        // Only the default algorithm is warmed up, others fill on first demand
+        refill(properties.getKeyAlgorithm(), getSlot(properties.getKeyAlgorithm()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public KeyPair take(KeyAlgorithm algorithm) {
+        var slot = getSlot(algorithm);
+        var keyPair = slot.pool.poll();
+
+        if (slot.pool.size() < properties.getKeyPoolLowWaterMark())
+            refill(algorithm, slot);
+
+        if (keyPair != null) {
+            hits.incrementAndGet();
+            return keyPair;
+        }
+
+        fallbacks.incrementAndGet();
+        return generate(algorithm);
+    }
+
+    public int size(KeyAlgorithm algorithm) {
+        var slot = slots.get(algorithm);
+        return slot == null ? 0 : slot.pool.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    private Slot getSlot(KeyAlgorithm algorithm) {
+        return slots.computeIfAbsent(algorithm, a -> {
+            var slot = new Slot(Math.max(1, properties.getKeyPoolSize()));
+            Gauge.builder("odyssey.keypair.pool.size", slot.pool, BlockingQueue::size)
+                    .tag("algorithm", a.name())
+                    .register(meterRegistry);
+            return slot;
+        });
+    }
+
+    private void refill(KeyAlgorithm algorithm, Slot slot) {
+        while (true) {
+            var active = slot.activeFillers.get();
+            if (active >= workerCount)
+                return;
+
+            if (slot.activeFillers.compareAndSet(active, active + 1)) {
+                try {
+                    workers.execute(() -> fill(algorithm, slot));
+                } catch (RejectedExecutionException e) {
+                    slot.activeFillers.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private KeyPair generate(KeyAlgorithm algorithm) {
+        var sample = Timer.start(meterRegistry);
+        try {
+            return algorithm.generate();
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.keypair.generate", "algorithm", algorithm.name()));
+        }
+    }
+
+    private void fill(KeyAlgorithm algorithm, Slot slot) {
+        try {
+            while (slot.pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted())
+                if (!slot.pool.offer(generate(algorithm)))
+                    break;
+        } finally {
+            slot.activeFillers.decrementAndGet();
+        }
+    }
+}
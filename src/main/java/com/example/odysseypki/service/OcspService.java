@@ -0,0 +1,242 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.repository.CertificateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.*;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// OCSP responder answering with responses signed by the issuing CA. Nonces are
+// ignored (RFC 5019), which lets single-certificate responses be cached per serial
+// number until nextUpdate and re-signed in the background while they stay in use.
+@Service
+public class OcspService {
+    @Autowired
+    private CertificateRepository certificateRepository;
+    @Autowired
+    private RevocationService revocationService;
+    @Autowired
+    private IssuerKeyCache issuerKeyCache;
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<BigInteger, CachedResponse> cache = new ConcurrentHashMap<>();
+    // Bumped before every invalidation, a response signed across a bump may carry a stale status
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "ocsp-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record CachedResponse(byte[] encoded, CertificateID id, Date nextUpdate, AtomicLong hits) {}
+
+    private record Issuer(String alias, X509CertificateHolder certificate) {}
+
+    @PostConstruct
+    public void init() {
+        var interval = Math.max(1000, properties.getOcspValidityMillis() / 4);
+        refresher.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    public byte[] respond(byte[] encodedRequest) throws IOException {
+        OCSPReq request;
+        try {
+            request = new OCSPReq(encodedRequest);
+        } catch (IOException e) {
+            return status(OCSPResp.MALFORMED_REQUEST);
+        }
+
+        try {
+            var ids = request.getRequestList();
+            if (ids.length != 1)
+                return respondUncached(ids);
+
+            var id = ids[0].getCertID();
+            var cached = cache.get(id.getSerialNumber());
+            if (cached != null && cached.id().equals(id) && cached.nextUpdate().after(new Date())) {
+                cached.hits().incrementAndGet();
+                return cached.encoded();
+            }
+
+            var issuer = findIssuer(id);
+            if (issuer == null)
+                return status(OCSPResp.UNAUTHORIZED);
+
+            return sign(issuer, id);
+        } catch (GeneralSecurityException | OCSPException | OperatorCreationException e) {
+            return status(OCSPResp.INTERNAL_ERROR);
+        }
+    }
+
+    public void invalidate(Collection<BigInteger> serialNumbers) {
+        invalidations.incrementAndGet();
+        serialNumbers.forEach(cache::remove);
+    }
+
+    private byte[] respondUncached(Req[] requests) throws GeneralSecurityException, IOException, OCSPException, OperatorCreationException {
+        if (requests.length == 0)
+            return status(OCSPResp.MALFORMED_REQUEST);
+
+        var issuer = findIssuer(requests[0].getCertID());
+        if (issuer == null)
+            return status(OCSPResp.UNAUTHORIZED);
+
+        var builder = createBuilder(issuer);
+        var nextUpdate = new Date(System.currentTimeMillis() + properties.getOcspValidityMillis());
+
+        for (var request : requests) {
+            var id = request.getCertID();
+            if (!id.matchesIssuer(issuer.certificate(), new JcaDigestCalculatorProviderBuilder().build()))
+                return status(OCSPResp.UNAUTHORIZED);
+            builder.addResponse(id, findStatus(id.getSerialNumber()), new Date(), nextUpdate, null);
+        }
+
+        var encoded = build(issuer, builder);
+        return encoded == null ? status(OCSPResp.UNAUTHORIZED) : encoded;
+    }
+
+    private byte[] sign(Issuer issuer, CertificateID id) throws GeneralSecurityException, IOException, OCSPException, OperatorCreationException {
+        var stamp = invalidations.get();
+        var nextUpdate = new Date(System.currentTimeMillis() + properties.getOcspValidityMillis());
+        var builder = createBuilder(issuer);
+        builder.addResponse(id, findStatus(id.getSerialNumber()), new Date(), nextUpdate, null);
+
+        var encoded = build(issuer, builder);
+        if (encoded == null)
+            return status(OCSPResp.UNAUTHORIZED);
+
+        // Checked under the entry's lock: either the invalidation happened first and the response
+        // is not cached, or it happens after the insert and removes it
+        if (cache.size() < properties.getOcspCacheSize())
+            cache.compute(id.getSerialNumber(), (serialNumber, current) -> invalidations.get() == stamp
+                    ? new CachedResponse(encoded, id, nextUpdate, new AtomicLong(0))
+                    : current);
+        return encoded;
+    }
+
+    // Re-signs responses that were hit since the last pass before they expire, drops the rest
+    private void refresh() {
+        var threshold = new Date(System.currentTimeMillis() + properties.getOcspValidityMillis() / 2);
+
+        for (var entry : cache.entrySet()) {
+            var cached = entry.getValue();
+            if (cached.nextUpdate().after(threshold))
+                continue;
+
+            if (cached.hits().get() == 0) {
+                cache.remove(entry.getKey(), cached);
+                continue;
+            }
+
+            try {
+                var issuer = findIssuer(cached.id());
+                if (issuer == null)
+                    cache.remove(entry.getKey(), cached);
+                else
+                    sign(issuer, cached.id());
+            } catch (Exception e) {
+                cache.remove(entry.getKey(), cached);
+            }
+        }
+    }
+
+    private CertificateStatus findStatus(BigInteger serialNumber) {
+        var revocation = revocationService.findBySerialNumber(serialNumber);
+        if (revocation != null)
+            return new RevokedStatus(
+                    Date.from(revocation.getDate().atZone(ZoneId.systemDefault()).toInstant()),
+                    revocation.getReason() == null ? CRLReason.unspecified : revocation.getReason());
+
+        if (certificateRepository.findAliasBySerialNumber(serialNumber) != null)
+            return CertificateStatus.GOOD;
+
+        return new UnknownStatus();
+    }
+
+    // Issuer is found from the serial number index, or from the revocation record of deleted certificates
+    private Issuer findIssuer(CertificateID id) throws GeneralSecurityException, IOException, OCSPException, OperatorCreationException {
+        String issuerAlias = null;
+
+        var alias = certificateRepository.findAliasBySerialNumber(id.getSerialNumber());
+        if (alias != null)
+            issuerAlias = certificateRepository.findParentAlias(alias);
+
+        var revocation = revocationService.findBySerialNumber(id.getSerialNumber());
+        if (issuerAlias == null && revocation != null)
+            issuerAlias = revocation.getIssuerAlias();
+
+        if (issuerAlias == null)
+            return null;
+
+        var certificate = certificateRepository.find(issuerAlias);
+        if (certificate == null)
+            return null;
+
+        var holder = new JcaX509CertificateHolder(certificate);
+        if (!id.matchesIssuer(holder, new JcaDigestCalculatorProviderBuilder().build()))
+            return null;
+
+        return new Issuer(issuerAlias, holder);
+    }
+
+    private BasicOCSPRespBuilder createBuilder(Issuer issuer) throws OperatorCreationException, OCSPException {
+        DigestCalculator digestCalculator = new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1);
+        return new BasicOCSPRespBuilder(issuer.certificate().getSubjectPublicKeyInfo(), digestCalculator);
+    }
+
+    private byte[] build(Issuer issuer, BasicOCSPRespBuilder builder) throws GeneralSecurityException, IOException, OCSPException, OperatorCreationException {
+        var privateKey = issuerKeyCache.get(issuer.alias());
+        if (privateKey == null)
+            return null;
+
+        var sample = Timer.start();
+        try {
+            var signer = CertificateBuilder.getSignerBuilder(KeyAlgorithm.of(privateKey)).build(privateKey);
+            var basicResponse = builder.build(signer, new X509CertificateHolder[] {issuer.certificate()}, new Date());
+            return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResponse).getEncoded();
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.sign", "type", "ocsp"));
+        }
+    }
+
+    private static byte[] status(int status) throws IOException {
+        try {
+            return new OCSPRespBuilder().build(status, null).getEncoded();
+        } catch (OCSPException e) {
+            throw new IOException(e);
+        }
+    }
+}
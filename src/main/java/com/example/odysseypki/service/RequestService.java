@@ -1,17 +1,38 @@
 package com.example.odysseypki.service;
 
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
 import com.example.odysseypki.entity.Request;
 import com.example.odysseypki.repository.RequestRepository;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 public class RequestService {
     @Autowired
     private RequestRepository requestRepository;
+    @Autowired
+    private IssuanceJobQueue issuanceJobQueue;
 
     public List<Request> getAll() { return requestRepository.findAll(); }
 
@@ -21,19 +42,86 @@ public class RequestService {
     }
 
     public Request create(String commonName, String email, String uid) {
-        var request = new Request(null, commonName, email, uid, LocalDateTime.now(), Request.Status.PENDING);
+        var request = new Request(null, commonName, email, uid, LocalDateTime.now(), Request.Status.PENDING,
+                null, 0, null, null, null);
+        return requestRepository.save(request);
+    }
+
+    // Accepts a PEM or DER encoded PKCS#10 request, the subject fields are read from the request itself
+    public Request createFromCsr(byte[] encoded) throws IOException, OperatorCreationException {
+        var csr = parseCsr(encoded);
+        var verified = CertificateBuilder.verifyCertificationRequest(csr);
+        var subject = verified.getSubject();
+
+        // Only keys that would be issued are accepted, anything else is refused before it is queued
+        try {
+            KeyAlgorithm.of(verified.getPublicKey());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Certification request key cannot be read.");
+        }
+
+        var commonName = attributeValue(subject, BCStyle.CN);
+        if (commonName == null)
+            throw new IllegalArgumentException("Certification request has no common name.");
+
+        var email = attributeValue(subject, BCStyle.EmailAddress);
+        if (email == null)
+            email = requestedEmail(csr);
+
+        var request = new Request(null, commonName, email, attributeValue(subject, BCStyle.UID),
+                LocalDateTime.now(), Request.Status.PENDING, null, 0, null, null,
+                Base64.getEncoder().encodeToString(csr.getEncoded()));
         return requestRepository.save(request);
     }
 
+    public static PKCS10CertificationRequest decodeCsr(String csr) throws IOException {
+        return new PKCS10CertificationRequest(Base64.getDecoder().decode(csr));
+    }
+
+    private static PKCS10CertificationRequest parseCsr(byte[] encoded) throws IOException {
+        var text = new String(encoded, StandardCharsets.US_ASCII);
+        if (!text.contains("-----BEGIN"))
+            return new PKCS10CertificationRequest(encoded);
+
+        try (var parser = new PEMParser(new StringReader(text))) {
+            if (parser.readObject() instanceof PKCS10CertificationRequest csr)
+                return csr;
+        }
+        throw new IllegalArgumentException("Body is not a certification request.");
+    }
+
+    private static String attributeValue(X500Name name, ASN1ObjectIdentifier type) {
+        var rdns = name.getRDNs(type);
+        return rdns.length == 0 ? null : IETFUtils.valueToString(rdns[0].getFirst().getValue());
+    }
+
+    // First rfc822 name of a requested subject alternative name extension
+    private static String requestedEmail(PKCS10CertificationRequest csr) {
+        for (var attribute : csr.getAttributes(PKCSObjectIdentifiers.pkcs_9_at_extensionRequest)) {
+            var altNames = GeneralNames.fromExtensions(
+                    Extensions.getInstance(attribute.getAttrValues().getObjectAt(0)), Extension.subjectAlternativeName);
+            if (altNames == null) continue;
+
+            for (var name : altNames.getNames())
+                if (name.getTagNo() == GeneralName.rfc822Name)
+                    return name.getName().toString();
+        }
+        return null;
+    }
+
     public Request accept(Long id) {
         var request = findById(id);
         if (request.getStatus().equals(Request.Status.PENDING)) {
             request.setStatus(Request.Status.ACCEPTED);
-            requestRepository.save(request);
+            request = issuanceJobQueue.submit(request);
         }
         return request;
     }
 
+    public List<Request> acceptAll(List<Long> ids) {
+        return ids.stream().map(this::accept).toList();
+    }
+
     public Request decline(Long id) {
         var request = findById(id);
         if (request.getStatus().equals(Request.Status.PENDING)) {
@@ -0,0 +1,250 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.entity.Revocation;
+import com.example.odysseypki.repository.CertificateRepository;
+import com.example.odysseypki.repository.RevocationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class RevocationService {
+    @Autowired
+    private RevocationRepository revocationRepository;
+    @Autowired
+    private CertificateRepository certificateRepository;
+    @Autowired
+    private IssuerKeyCache issuerKeyCache;
+    @Autowired
+    private OdysseyPkiProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, CrlState> states = new ConcurrentHashMap<>();
+    private final Map<BigInteger, Revocation> revokedSerialNumbers = new ConcurrentHashMap<>();
+
+    public record EncodedCrl(byte[] encoded, BigInteger number, Date nextUpdate) {}
+
+    // Revocations are kept per issuing CA. The served full CRL is dropped on every revocation
+    // and rebuilt on the next request from the last base CRL plus the entries revoked since,
+    // which are also what the delta CRL carries. A new base is cut every crlDeltaThreshold entries.
+    private static class CrlState {
+        private final List<Revocation> pending = new ArrayList<>();
+        private X509CRLHolder base;
+        private BigInteger baseNumber;
+        private EncodedCrl full;
+        private EncodedCrl delta;
+        private long lastNumber;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (var revocation : revocationRepository.findAll()) {
+            revokedSerialNumbers.put(new BigInteger(revocation.getSerialNumber()), revocation);
+            getState(revocation.getIssuerAlias()).pending.add(revocation);
+        }
+    }
+
+    // RFC 5280 reason codes, 7 is unused
+    public static boolean isValidReason(int reason) {
+        return reason >= CRLReason.unspecified && reason <= CRLReason.aACompromise && reason != 7;
+    }
+
+    public Revocation revoke(String issuerAlias, String alias, X509Certificate certificate, int reason) {
+        if (!isValidReason(reason))
+            throw new IllegalArgumentException("Invalid revocation reason.");
+        if (revokedSerialNumbers.containsKey(certificate.getSerialNumber()))
+            throw new IllegalArgumentException("Certificate is already revoked.");
+
+        return record(List.of(newRevocation(issuerAlias, alias, certificate, reason))).get(0);
+    }
+
+    // Revokes certificates given as alias -> parent alias, skipping already revoked ones
+    public List<Revocation> revokeAll(Map<String, String> parentAliases, Map<String, X509Certificate> certificates, int reason) {
+        var revocations = new ArrayList<Revocation>();
+
+        for (var entry : certificates.entrySet()) {
+            var certificate = entry.getValue();
+            var issuerAlias = parentAliases.get(entry.getKey());
+            if (certificate == null || issuerAlias == null || revokedSerialNumbers.containsKey(certificate.getSerialNumber()))
+                continue;
+
+            revocations.add(newRevocation(issuerAlias, entry.getKey(), certificate, reason));
+        }
+
+        return record(revocations);
+    }
+
+    public Revocation findBySerialNumber(BigInteger serialNumber) {
+        return revokedSerialNumbers.get(serialNumber);
+    }
+
+    // Drops CRL state of CAs that no longer exist
+    public void forgetIssuers(Collection<String> aliases) {
+        aliases.forEach(states::remove);
+    }
+
+    // Null for aliases that are not CAs, state is only created for existing CAs
+    public EncodedCrl getFullCrl(String issuerAlias) throws GeneralSecurityException, IOException, OperatorCreationException {
+        if (!isCa(issuerAlias))
+            return null;
+        var state = getState(issuerAlias);
+
+        synchronized (state) {
+            if (state.full == null || state.full.nextUpdate().before(new Date()))
+                buildFullCrl(issuerAlias, state);
+            return state.full;
+        }
+    }
+
+    public EncodedCrl getDeltaCrl(String issuerAlias) throws GeneralSecurityException, IOException, OperatorCreationException {
+        if (!isCa(issuerAlias))
+            return null;
+        var state = getState(issuerAlias);
+
+        synchronized (state) {
+            if (state.full == null || state.full.nextUpdate().before(new Date()))
+                buildFullCrl(issuerAlias, state);
+            if (state.full == null)
+                return null;
+
+            if (state.delta == null || state.delta.nextUpdate().before(new Date()))
+                buildDeltaCrl(issuerAlias, state);
+            return state.delta;
+        }
+    }
+
+    private List<Revocation> record(List<Revocation> revocations) {
+        if (revocations.isEmpty())
+            return revocations;
+
+        var saved = revocationRepository.saveAll(revocations);
+
+        for (var revocation : saved) {
+            revokedSerialNumbers.put(new BigInteger(revocation.getSerialNumber()), revocation);
+
+            var state = getState(revocation.getIssuerAlias());
+            synchronized (state) {
+                state.pending.add(revocation);
+                state.full = null;
+                state.delta = null;
+            }
+        }
+
+        return saved;
+    }
+
+    private void buildFullCrl(String issuerAlias, CrlState state) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var number = nextNumber(state);
+        var nextUpdate = new Date(System.currentTimeMillis() + properties.getCrlValidityMillis());
+        var builder = createBuilder(issuerAlias, number, nextUpdate);
+        if (builder == null) return;
+
+        if (state.base != null)
+            builder.addCRL(state.base);
+        addEntries(builder, state.pending);
+
+        var holder = sign(issuerAlias, builder);
+        if (holder == null) return;
+
+        state.full = new EncodedCrl(holder.getEncoded(), number, nextUpdate);
+        state.delta = null;
+        if (state.base == null || state.pending.size() >= properties.getCrlDeltaThreshold()) {
+            state.base = holder;
+            state.baseNumber = number;
+            state.pending.clear();
+        }
+    }
+
+    private void buildDeltaCrl(String issuerAlias, CrlState state) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var number = nextNumber(state);
+        var nextUpdate = new Date(System.currentTimeMillis() + properties.getDeltaCrlValidityMillis());
+        var builder = createBuilder(issuerAlias, number, nextUpdate);
+        if (builder == null) return;
+
+        builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(state.baseNumber));
+        addEntries(builder, state.pending);
+
+        var holder = sign(issuerAlias, builder);
+        if (holder == null) return;
+
+        state.delta = new EncodedCrl(holder.getEncoded(), number, nextUpdate);
+    }
+
+    private X509v2CRLBuilder createBuilder(String issuerAlias, BigInteger number, Date nextUpdate) throws GeneralSecurityException, IOException {
+        var issuer = certificateRepository.find(issuerAlias);
+        if (issuer == null || issuer.getBasicConstraints() < 0)
+            return null;
+
+        var builder = new X509v2CRLBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), new Date());
+        builder.setNextUpdate(nextUpdate);
+        builder.addExtension(Extension.cRLNumber, false, new CRLNumber(number));
+        builder.addExtension(Extension.authorityKeyIdentifier, false,
+                new JcaX509ExtensionUtils().createAuthorityKeyIdentifier(issuer));
+        return builder;
+    }
+
+    private X509CRLHolder sign(String issuerAlias, X509v2CRLBuilder builder) throws GeneralSecurityException, IOException, OperatorCreationException {
+        var privateKey = issuerKeyCache.get(issuerAlias);
+        if (privateKey == null)
+            return null;
+
+        var sample = Timer.start();
+        try {
+            var signer = CertificateBuilder.getSignerBuilder(KeyAlgorithm.of(privateKey)).build(privateKey);
+            return builder.build(signer);
+        } finally {
+            sample.stop(meterRegistry.timer("odyssey.sign", "type", "crl"));
+        }
+    }
+
+    private static void addEntries(X509v2CRLBuilder builder, List<Revocation> revocations) {
+        for (var revocation : revocations)
+            builder.addCRLEntry(
+                    new BigInteger(revocation.getSerialNumber()),
+                    Date.from(revocation.getDate().atZone(ZoneId.systemDefault()).toInstant()),
+                    revocation.getReason());
+    }
+
+    // CRL numbers must keep increasing across restarts, so they never fall behind the clock
+    private static BigInteger nextNumber(CrlState state) {
+        state.lastNumber = Math.max(state.lastNumber + 1, System.currentTimeMillis());
+        return BigInteger.valueOf(state.lastNumber);
+    }
+
+    private boolean isCa(String alias) throws GeneralSecurityException, IOException {
+        var certificate = certificateRepository.find(alias);
+        return certificate != null && certificate.getBasicConstraints() >= 0;
+    }
+
+    private CrlState getState(String issuerAlias) {
+        return states.computeIfAbsent(issuerAlias, a -> new CrlState());
+    }
+
+    private static Revocation newRevocation(String issuerAlias, String alias, X509Certificate certificate, int reason) {
+        return new Revocation(null, issuerAlias, alias,
+                certificate.getSerialNumber().toString(), LocalDateTime.now(), reason);
+    }
+}
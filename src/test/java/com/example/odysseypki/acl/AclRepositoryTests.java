@@ -0,0 +1,272 @@
+package com.example.odysseypki.acl;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AclRepositoryTests {
+	private static final String SECRET = "test-secret";
+	private static final int KDF_ITERATIONS = 1000;
+	private static final long SYNC_DELAY_MILLIS = 200;
+	private static final int WRITERS = 8;
+
+	@TempDir
+	private Path directory;
+	private Path path;
+	private AclRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		path = directory.resolve("private-keys.acl");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (repository != null)
+			repository.shutdown();
+	}
+
+	@Test
+	void roundTripsRecordsAcrossRestarts() throws Exception {
+		repository = open();
+		repository.saveAll(Map.of("a", "key-a", "b", "key-b"));
+		repository.save("a", "key-a2");
+		repository.deleteAll(List.of("b"));
+		assertEquals("key-a2", repository.load("a"));
+		assertNull(repository.load("b"));
+
+		reopen();
+		assertEquals("key-a2", repository.load("a"));
+		assertNull(repository.load("b"));
+		assertNull(repository.load("missing"));
+	}
+
+	@Test
+	void indexesAliasesByKeyedHash() throws Exception {
+		repository = open();
+		repository.saveAll(Map.of("alias-one", "private-key-one", "alias-two", "private-key-two"));
+		reopen();
+
+		// Neither aliases nor keys appear in the file, equal plaintexts do not give equal records
+		var content = Files.readString(path);
+		assertFalse(content.contains("alias-one"));
+		assertFalse(content.contains("private-key-one"));
+		var lines = Files.readAllLines(path);
+		assertEquals(5, lines.size());
+		assertNotEquals(lines.get(2), lines.get(4));
+
+		// Another secret derives another hash key, so none of the records is found
+		repository.shutdown();
+		repository = open("other-secret", false);
+		assertNull(repository.load("alias-one"));
+	}
+
+	@Test
+	void rejectsTamperedRecords() throws Exception {
+		repository = open();
+		repository.saveAll(Map.of("a", "key-a", "b", "key-b"));
+		repository.shutdown();
+
+		// Flipping a ciphertext byte breaks the GCM tag
+		var lines = Files.readAllLines(path);
+		var ciphertext = Base64.getDecoder().decode(lines.get(2));
+		ciphertext[ciphertext.length - 1] ^= 1;
+		lines.set(2, Base64.getEncoder().encodeToString(ciphertext));
+		Files.write(path, lines);
+
+		repository = open();
+		var tampered = lines.get(1);
+		var alias = tampered.equals(hashOf("a")) ? "a" : "b";
+		assertThrows(AEADBadTagException.class, () -> repository.load(alias));
+		repository.shutdown();
+
+		// The alias hash is authenticated too, a record moved under another alias does not decrypt
+		Files.write(path, List.of(lines.get(0), lines.get(1), lines.get(4)));
+		repository = open();
+		assertThrows(AEADBadTagException.class, () -> repository.load(alias));
+	}
+
+	@Test
+	void migratesLegacyFileAndRemovesBackup() throws Exception {
+		writeLegacy();
+
+		repository = open();
+		assertEquals("key-b", repository.load("b"));
+		assertNull(repository.load("a"));
+		assertTrue(Files.readString(path).startsWith("ODYSSEY-ACL-2 "));
+		assertFalse(Files.exists(backup()));
+
+		reopen();
+		assertEquals("key-b", repository.load("b"));
+	}
+
+	@Test
+	void keepsLegacyBackupOnlyWhenAskedTo() throws Exception {
+		writeLegacy();
+
+		repository = open(SECRET, true);
+		assertEquals("key-b", repository.load("b"));
+		assertTrue(Files.exists(backup()));
+
+		// Without the opt-in a leftover backup is checked against the vault and removed
+		reopen();
+		assertFalse(Files.exists(backup()));
+		assertEquals("key-b", repository.load("b"));
+	}
+
+	@Test
+	void refusesToMigrateUnderAnotherSecret() throws Exception {
+		writeLegacy();
+		var legacy = Files.readString(path);
+
+		assertThrows(IllegalStateException.class, () -> open("rotated-secret", false));
+		assertEquals(legacy, Files.readString(path));
+		assertFalse(Files.exists(backup()));
+
+		repository = open();
+		assertEquals("key-b", repository.load("b"));
+	}
+
+	@Test
+	void keepsBackupWithNothingToVerify() throws Exception {
+		Files.writeString(path, AesEncryption.encrypt("a", SECRET) + "\n" + AesEncryption.encrypt("key-a", SECRET) + "\n"
+				+ AesEncryption.encrypt("a", SECRET) + "\n\n");
+
+		repository = open();
+		assertNull(repository.load("a"));
+		assertTrue(Files.exists(backup()));
+	}
+
+	@Test
+	void writersWaitForSharedSync() throws Exception {
+		repository = open();
+		var properties = (OdysseyPkiProperties) ReflectionTestUtils.getField(repository, "properties");
+		ReflectionTestUtils.setField(properties, "aclSyncDelayMillis", SYNC_DELAY_MILLIS);
+		var syncs = ((MeterRegistry) ReflectionTestUtils.getField(repository, "meterRegistry")).timer("odyssey.acl.sync");
+
+		// A write returns only once the fsync covering it has run
+		var started = System.nanoTime();
+		repository.save("single", "key-single");
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= SYNC_DELAY_MILLIS);
+		assertEquals(1, syncs.count());
+
+		var start = new CountDownLatch(1);
+		var executor = Executors.newFixedThreadPool(WRITERS);
+		try {
+			var writes = new ArrayList<Future<?>>();
+			for (var i = 0; i < WRITERS; i++) {
+				var alias = "writer-" + i;
+				writes.add(executor.submit(() -> {
+					start.await();
+					repository.save(alias, "key-" + alias);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (var write : writes)
+				write.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Concurrent writers joined a pending fsync instead of forcing one each
+		assertTrue(syncs.count() - 1 < WRITERS);
+		reopen();
+		for (var i = 0; i < WRITERS; i++)
+			assertEquals("key-writer-" + i, repository.load("writer-" + i));
+	}
+
+	@Test
+	void truncatesTornLastRecord() throws Exception {
+		repository = open();
+		repository.saveAll(Map.of("a", "key-a", "b", "key-b"));
+		reopen();
+		var complete = Files.size(path);
+
+		// A crash mid-append leaves a hash line without the key line after it
+		Files.writeString(path, "dG9ybg==\n", StandardOpenOption.APPEND);
+		reopen();
+		assertEquals(complete, Files.size(path));
+		assertEquals("key-a", repository.load("a"));
+
+		// Appends after recovery land right behind the last complete record
+		repository.save("c", "key-c");
+		reopen();
+		assertEquals("key-b", repository.load("b"));
+		assertEquals("key-c", repository.load("c"));
+	}
+
+	@Test
+	void truncatesRecordWithoutFinalNewline() throws Exception {
+		repository = open();
+		repository.save("a", "key-a");
+		reopen();
+		var complete = Files.size(path);
+
+		Files.writeString(path, "dG9ybg==\nAAAA", StandardOpenOption.APPEND);
+		reopen();
+		assertEquals(complete, Files.size(path));
+		assertEquals("key-a", repository.load("a"));
+	}
+
+	private void writeLegacy() throws Exception {
+		Files.writeString(path,
+				AesEncryption.encrypt("a", SECRET) + "\n" + AesEncryption.encrypt("key-a", SECRET) + "\n"
+				+ AesEncryption.encrypt("b", SECRET) + "\n" + AesEncryption.encrypt("key-b", SECRET) + "\n"
+				+ AesEncryption.encrypt("a", SECRET) + "\n\n");
+	}
+
+	private Path backup() {
+		return path.resolveSibling(path.getFileName() + ".legacy");
+	}
+
+	private String hashOf(String alias) throws Exception {
+		var header = Files.readAllLines(path).get(0);
+		var salt = Base64.getDecoder().decode(header.substring(header.indexOf(' ') + 1));
+		return VaultCipher.derive(SECRET, salt, KDF_ITERATIONS).hash(alias);
+	}
+
+	private void reopen() throws Exception {
+		repository.shutdown();
+		repository = open();
+	}
+
+	private AclRepository open() throws Exception {
+		return open(SECRET, false);
+	}
+
+	private AclRepository open(String secret, boolean keepLegacy) throws Exception {
+		var properties = new OdysseyPkiProperties();
+		ReflectionTestUtils.setField(properties, "secret", secret);
+		ReflectionTestUtils.setField(properties, "aclKeepLegacy", keepLegacy);
+		ReflectionTestUtils.setField(properties, "aclPath", path.toString());
+		ReflectionTestUtils.setField(properties, "aclSyncDelayMillis", 10L);
+		ReflectionTestUtils.setField(properties, "aclKdfIterations", KDF_ITERATIONS);
+
+		var acl = new AclRepository();
+		ReflectionTestUtils.setField(acl, "properties", properties);
+		ReflectionTestUtils.setField(acl, "meterRegistry", new SimpleMeterRegistry());
+		acl.init();
+		return acl;
+	}
+}
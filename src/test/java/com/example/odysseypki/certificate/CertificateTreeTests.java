@@ -0,0 +1,144 @@
+package com.example.odysseypki.certificate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateTreeTests {
+	@TempDir
+	private Path directory;
+
+	@Test
+	void roundTripsTree() throws Exception {
+		var tree = CertificateTree.createTree("root");
+		tree.addAlias("root", "middle");
+		tree.addAlias("root", "other");
+		tree.addAlias("middle", "leaf-1");
+		tree.addAlias("middle", "leaf-2");
+		tree.addAlias("other", "leaf-3");
+
+		var read = roundTrip(tree);
+		assertEquals(tree.getAllAliases(), read.getAllAliases());
+		assertEquals("middle", read.findParentAlias("leaf-2"));
+		assertEquals("other", read.findParentAlias("leaf-3"));
+		assertNull(read.findParentAlias("root"));
+	}
+
+	@Test
+	void roundTripsDeepChain() throws Exception {
+		var tree = CertificateTree.createTree("0");
+		for (int i = 1; i < 100_000; ++i)
+			tree.addAlias(Integer.toString(i - 1), Integer.toString(i));
+
+		var read = roundTrip(tree);
+		assertEquals(100_000, read.getAllAliases().size());
+		assertEquals("99998", read.findParentAlias("99999"));
+		assertEquals(100_000, read.getSubtreeAliases("0").size());
+	}
+
+	@Test
+	void roundTripsMultiByteAliases() throws Exception {
+		var aliases = List.of("корен", "中间证书", "Zertifikat-ä-ö-ü", "🔐-leaf");
+		var tree = CertificateTree.createTree(aliases.get(0));
+		for (int i = 1; i < aliases.size(); ++i)
+			tree.addAlias(aliases.get(i - 1), aliases.get(i));
+
+		var read = roundTrip(tree);
+		assertEquals(aliases, read.getAllAliases());
+		assertEquals("中间证书", read.findParentAlias("Zertifikat-ä-ö-ü"));
+	}
+
+	@Test
+	void migratesLegacyFormat() throws Exception {
+		var tree = CertificateTree.createTree("root");
+		tree.addAlias("root", "middle");
+		tree.addAlias("middle", "leaf");
+
+		var file = directory.resolve("alias-tree.dat");
+		try (var out = new ObjectOutputStream(Files.newOutputStream(file))) {
+			out.writeObject(tree);
+		}
+
+		// Legacy files are still readable as they are, migration rewrites them once
+		assertEquals(tree.getAllAliases(), CertificateTree.deserialize(file.toString()).getAllAliases());
+		assertTrue(CertificateTree.migrate(file.toString()));
+		assertFalse(CertificateTree.migrate(file.toString()));
+
+		var read = CertificateTree.deserialize(file.toString());
+		assertEquals(tree.getAllAliases(), read.getAllAliases());
+		assertEquals("middle", read.findParentAlias("leaf"));
+	}
+
+	@Test
+	void rejectsTruncatedFile() throws Exception {
+		var tree = CertificateTree.createTree("root");
+		tree.addAlias("root", "middle");
+		var file = write(tree);
+
+		var bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+		assertThrows(IOException.class, () -> CertificateTree.deserialize(file.toString()));
+
+		Files.write(file, Arrays.copyOf(bytes, 5));
+		assertThrows(IOException.class, () -> CertificateTree.deserialize(file.toString()));
+	}
+
+	@Test
+	void rejectsCorruptFile() throws Exception {
+		var tree = CertificateTree.createTree("root");
+		tree.addAlias("root", "middle");
+		var file = write(tree);
+		var bytes = Files.readAllBytes(file);
+
+		var badMagic = bytes.clone();
+		badMagic[0] ^= 1;
+		Files.write(file, badMagic);
+		assertThrows(IOException.class, () -> CertificateTree.deserialize(file.toString()));
+
+		// A huge node count must not turn into a huge allocation
+		var badCount = bytes.clone();
+		ByteBuffer.wrap(badCount).putInt(5, Integer.MAX_VALUE);
+		Files.write(file, badCount);
+		assertThrows(IOException.class, () -> CertificateTree.deserialize(file.toString()));
+
+		// The second record points at itself as its parent
+		var badParent = bytes.clone();
+		ByteBuffer.wrap(badParent).putInt(9 + 4 + 2 + "root".length(), 1);
+		Files.write(file, badParent);
+		assertThrows(IOException.class, () -> CertificateTree.deserialize(file.toString()));
+	}
+
+	@Test
+	void copyIsIndependentOfOriginal() {
+		var tree = CertificateTree.createTree("root");
+		tree.addAlias("root", "middle");
+		tree.addAlias("middle", "leaf");
+
+		var copy = tree.copy();
+		tree.addAlias("middle", "added");
+		tree.removeAlias("leaf");
+
+		assertEquals(List.of("root", "middle", "leaf"), copy.getAllAliases());
+		assertEquals("middle", copy.findParentAlias("leaf"));
+		assertFalse(copy.contains("added"));
+	}
+
+	private CertificateTree roundTrip(CertificateTree tree) throws IOException {
+		return CertificateTree.deserialize(write(tree).toString());
+	}
+
+	private Path write(CertificateTree tree) throws IOException {
+		var file = directory.resolve("alias-tree.dat");
+		tree.serialize(file.toString());
+		return file;
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.odysseypki.certificate;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyAlgorithmTests {
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	void matchesEcKeysOnNamedCurve() throws Exception {
+		assertEquals(KeyAlgorithm.EC_P256, KeyAlgorithm.of(ec("secp256r1", "BC").getPublic()));
+		assertEquals(KeyAlgorithm.EC_P256, KeyAlgorithm.of(ec("secp256r1", "SunEC").getPrivate()));
+		assertEquals(KeyAlgorithm.EC_P384, KeyAlgorithm.of(ec("secp384r1", "BC").getPublic()));
+
+		// Same field sizes as the supported curves, but other curves
+		assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(ec("secp256k1", "BC").getPublic()));
+		assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(ec("brainpoolP384r1", "BC").getPublic()));
+		assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(ec("secp521r1", "BC").getPublic()));
+	}
+
+	@Test
+	void rejectsShortRsaKeys() throws Exception {
+		assertEquals(KeyAlgorithm.RSA_2048, KeyAlgorithm.of(rsa(2048).getPublic()));
+		assertEquals(KeyAlgorithm.RSA_2048, KeyAlgorithm.of(rsa(3072).getPublic()));
+		assertThrows(IllegalArgumentException.class, () -> KeyAlgorithm.of(rsa(1024).getPublic()));
+	}
+
+	private static KeyPair ec(String curve, String provider) throws Exception {
+		var generator = KeyPairGenerator.getInstance("EC", provider);
+		generator.initialize(new ECGenParameterSpec(curve));
+		return generator.generateKeyPair();
+	}
+
+	private static KeyPair rsa(int keySize) throws Exception {
+		var generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(keySize);
+		return generator.generateKeyPair();
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.CertificateTree;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CertificateRepositoryTests {
+	@Test
+	void retriesFailedBackgroundCommit() throws Exception {
+		var properties = new OdysseyPkiProperties();
+		ReflectionTestUtils.setField(properties, "commitDelayMillis", 10L);
+		var meterRegistry = new SimpleMeterRegistry();
+
+		// The store fails twice before a commit goes through
+		var store = mock(CertificateStore.class);
+		doThrow(new IOException("disk full")).doThrow(new IOException("disk full")).doNothing()
+				.when(store).commit(any());
+
+		var repository = new CertificateRepository();
+		ReflectionTestUtils.setField(repository, "store", store);
+		ReflectionTestUtils.setField(repository, "properties", properties);
+		ReflectionTestUtils.setField(repository, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(repository, "tree", CertificateTree.createTree("root"));
+
+		ReflectionTestUtils.invokeMethod(repository, "scheduleCommit");
+		verify(store, timeout(10_000).times(3)).commit(any());
+
+		// The last attempt is timed once the store returned
+		var successes = meterRegistry.timer("odyssey.commit", "outcome", "success");
+		for (var deadline = System.currentTimeMillis() + 10_000; successes.count() == 0 && System.currentTimeMillis() < deadline; )
+			Thread.sleep(10);
+		assertEquals(1, successes.count());
+		assertEquals(2, meterRegistry.timer("odyssey.commit", "outcome", "failure").count());
+	}
+}
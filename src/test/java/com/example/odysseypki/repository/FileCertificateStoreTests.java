@@ -0,0 +1,101 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.service.CertificateService;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.security.Security;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+		"ODYSSEY_CERTIFICATE_STORE=FILE",
+		"ODYSSEY_KEY_STORE_PATH=target/file-store-keystore.jks",
+		"ODYSSEY_ALIAS_TREE_PATH=target/file-store-alias-tree.dat",
+		"ODYSSEY_ACL_PATH=target/file-store-private-keys.acl"
+})
+class FileCertificateStoreTests {
+	@Autowired
+	private CertificateService certificateService;
+	@Autowired
+	private CertificateRepository certificateRepository;
+	@Autowired
+	private CertificateStore store;
+	@Autowired
+	private CertificateIndex certificateIndex;
+	@Autowired
+	private KeyStoreRepository keyStoreRepository;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	void storesHierarchyInKeyStoreAndTreeFile() throws Exception {
+		assertInstanceOf(FileCertificateStore.class, store);
+		certificateService.initializeKeyStore();
+
+		var ca = create("file-ca", CertificateService.MIDDLE_ALIAS, true);
+		var leaf = create("file-leaf", ca.getAlias(), false);
+		var other = create("file-other", CertificateService.MIDDLE_ALIAS, false);
+		certificateRepository.commit();
+
+		var tree = store.loadTree();
+		assertEquals(CertificateService.MIDDLE_ALIAS, tree.findParentAlias(ca.getAlias()));
+		assertEquals(ca.getAlias(), tree.findParentAlias(leaf.getAlias()));
+		assertEquals(leaf.getX509Certificate(), store.load(leaf.getAlias()));
+
+		// A restart rebuilds the resident index from the key store
+		certificateIndex.clear();
+		certificateRepository.init();
+		assertEquals(other.getAlias(), certificateRepository.findAliasBySerialNumber(other.getX509Certificate().getSerialNumber()));
+
+		var deletion = certificateRepository.delete(ca.getAlias());
+		assertEquals(List.of(ca.getAlias(), leaf.getAlias()), List.copyOf(deletion.certificates().keySet()));
+		certificateRepository.commit();
+
+		tree = store.loadTree();
+		assertFalse(tree.contains(ca.getAlias()));
+		assertFalse(tree.contains(leaf.getAlias()));
+		assertTrue(tree.contains(other.getAlias()));
+		assertNull(store.load(leaf.getAlias()));
+	}
+
+	@Test
+	void prunesTreeEntriesMissingFromKeyStore() throws Exception {
+		certificateService.initializeKeyStore();
+		var ca = create("pruned-ca", CertificateService.MIDDLE_ALIAS, true);
+		var leaf = create("pruned-leaf", ca.getAlias(), false);
+		certificateRepository.commit();
+
+		// As if the process stopped after the key store was flushed but before the tree was written
+		keyStoreRepository.deleteAll(List.of(ca.getAlias(), leaf.getAlias()));
+		keyStoreRepository.flush();
+		assertTrue(store.loadTree().contains(ca.getAlias()));
+
+		certificateIndex.clear();
+		certificateRepository.init();
+		assertNull(certificateRepository.findParentAlias(ca.getAlias()));
+		assertNull(certificateRepository.findParentAlias(leaf.getAlias()));
+		assertEquals(CertificateService.ROOT_ALIAS, certificateRepository.findParentAlias(CertificateService.MIDDLE_ALIAS));
+	}
+
+	private Certificate create(String commonName, String parentAlias, boolean isCa) throws Exception {
+		var now = System.currentTimeMillis();
+		var dto = new CertificateCreationDTO(parentAlias, commonName, null, commonName + "@example.com",
+				now, now + 60_000, isCa, false,
+				List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()), null);
+		return isCa ? certificateService.createCaCertificate(dto) : certificateService.createEndEntityCertificate(dto);
+	}
+}
@@ -0,0 +1,159 @@
+package com.example.odysseypki.repository;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.acl.AesEncryption;
+import com.example.odysseypki.certificate.CertificateBuilder;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.entity.Certificate;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.crypto.AEADBadTagException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JpaCertificateStoreTests {
+	private static final long VALIDITY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	@Autowired
+	private CertificateRepository certificateRepository;
+	@Autowired
+	private CertificateStore store;
+	@Autowired
+	private CertificateIndex certificateIndex;
+	@Autowired
+	private StoredCertificateRepository storedCertificateRepository;
+	@Autowired
+	private OdysseyPkiProperties properties;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	void storesHierarchyInDatabase() throws Exception {
+		assertInstanceOf(JpaCertificateStore.class, store);
+
+		var rootKeys = KeyAlgorithm.EC_P256.generate();
+		var root = issue("root", rootKeys, rootKeys, "CN=Root", "CN=Root", true);
+		certificateRepository.saveRoot(root);
+
+		var caKeys = KeyAlgorithm.EC_P256.generate();
+		var ca = issue("ca", caKeys, rootKeys, "CN=CA", "CN=Root", true);
+		certificateRepository.save("root", ca);
+
+		var leafKeys = KeyAlgorithm.EC_P256.generate();
+		var leaf = issue("leaf", leafKeys, caKeys, "CN=Leaf,UID=42", "CN=CA", false);
+		certificateRepository.save("ca", leaf);
+
+		var tree = store.loadTree();
+		assertEquals("root", tree.findParentAlias("ca"));
+		assertEquals("ca", tree.findParentAlias("leaf"));
+		assertEquals(leaf.getX509Certificate(), store.load("leaf"));
+
+		// Lookups missing from the resident index fall through to indexed queries
+		certificateIndex.clear();
+		assertEquals("leaf", certificateRepository.findAliasBySerialNumber(leaf.getX509Certificate().getSerialNumber()));
+		assertEquals(Set.of("leaf"), certificateRepository.findAliasesByUid("42"));
+
+		var deletion = certificateRepository.delete("ca");
+		assertEquals(List.of("ca", "leaf"), List.copyOf(deletion.certificates().keySet()));
+		assertEquals("root", deletion.parentAliases().get("ca"));
+		assertNull(store.load("ca"));
+		assertNull(store.load("leaf"));
+		assertEquals(List.of("root"), store.loadTree().getAllAliases());
+	}
+
+	@Test
+	void indexesEveryAliasSharingUid() throws Exception {
+		var rootKeys = KeyAlgorithm.EC_P256.generate();
+		certificateRepository.saveRoot(issue("root", rootKeys, rootKeys, "CN=Root", "CN=Root", true));
+
+		// A renewed certificate keeps the subject of its predecessor
+		var keys = KeyAlgorithm.EC_P256.generate();
+		certificateRepository.save("root", issue("predecessor", keys, rootKeys, "CN=Renewed,UID=77", "CN=Root", false));
+		certificateRepository.save("root", issue("successor", keys, rootKeys, "CN=Renewed,UID=77", "CN=Root", false));
+		assertEquals(Set.of("predecessor", "successor"), certificateIndex.findAliasesByUid("77"));
+
+		certificateRepository.delete("successor");
+		assertEquals(Set.of("predecessor"), certificateIndex.findAliasesByUid("77"));
+	}
+
+	@Test
+	void encryptsPrivateKeysPerRecordAndReadsLegacyRows() throws Exception {
+		var rootKeys = KeyAlgorithm.EC_P256.generate();
+		certificateRepository.saveRoot(issue("root", rootKeys, rootKeys, "CN=Root", "CN=Root", true));
+
+		// Both rows carry the key of their issuer, the same key under two aliases
+		var keys = KeyAlgorithm.EC_P256.generate();
+		certificateRepository.save("root", issue("first", keys, rootKeys, "CN=First", "CN=Root", true));
+		certificateRepository.save("root", issue("second", keys, rootKeys, "CN=Second", "CN=Root", true));
+
+		var jpaStore = (JpaCertificateStore) store;
+		var encoded = Base64.getEncoder().encodeToString(rootKeys.getPrivate().getEncoded());
+		assertEquals(encoded, jpaStore.loadPrivateKey("first"));
+		assertEquals(encoded, jpaStore.loadPrivateKey("second"));
+		assertNotEquals(storedCertificateRepository.findById("first").orElseThrow().getPrivateKey(),
+				storedCertificateRepository.findById("second").orElseThrow().getPrivateKey());
+
+		// A record moved to another row does not decrypt, the alias is authenticated
+		var first = storedCertificateRepository.findById("first").orElseThrow();
+		var second = storedCertificateRepository.findById("second").orElseThrow();
+		second.setPrivateKey(first.getPrivateKey());
+		storedCertificateRepository.save(second);
+		assertThrows(AEADBadTagException.class, () -> jpaStore.loadPrivateKey("second"));
+
+		// Rows written with AES/ECB before the switch still read back
+		second.setPrivateKey(AesEncryption.encrypt(encoded, properties.getSecret()));
+		storedCertificateRepository.save(second);
+		assertEquals(encoded, jpaStore.loadPrivateKey("second"));
+	}
+
+	@Test
+	void loadsMoreAliasesThanFitIntoOneInList() throws Exception {
+		var rootKeys = KeyAlgorithm.EC_P256.generate();
+		var root = issue("root", rootKeys, rootKeys, "CN=Root", "CN=Root", true);
+		certificateRepository.saveRoot(root);
+
+		var aliases = new ArrayList<String>();
+		for (var i = 0; i < 2500; i++)
+			aliases.add("missing-" + i);
+		aliases.add(2000, "root");
+
+		var loaded = store.loadAll(aliases);
+		assertEquals(aliases.size(), loaded.size());
+		assertEquals(root.getX509Certificate(), loaded.get("root"));
+		assertNull(loaded.get("missing-2499"));
+
+		var deleted = store.deleteAll(aliases);
+		assertEquals(root.getX509Certificate(), deleted.get("root"));
+		assertNull(store.load("root"));
+	}
+
+	private static Certificate issue(String alias, KeyPair subject, KeyPair issuer, String subjectName, String issuerName, boolean isCa) throws Exception {
+		return new CertificateBuilder()
+				.withSubject(subject.getPublic(), new X500Name(subjectName))
+				.withIssuer(issuer.getPrivate(), issuer.getPublic(), new X500Name(issuerName))
+				.withExpiration(VALIDITY_MILLIS)
+				.withAlias(alias)
+				.withPrivateKey(subject.getPrivate())
+				.setRootCertificate(subject == issuer)
+				.setCaCertificate(isCa)
+				.withKeyUsages(List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()))
+				.build();
+	}
+}
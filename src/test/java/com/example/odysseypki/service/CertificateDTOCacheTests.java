@@ -0,0 +1,69 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.dto.CertificateDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CertificateDTOCacheTests {
+	private static final int CACHE_SIZE = 2;
+
+	private CertificateDTOCache cache;
+	private final Map<String, X509Certificate> certificates = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		var properties = new OdysseyPkiProperties();
+		ReflectionTestUtils.setField(properties, "dtoCacheSize", CACHE_SIZE);
+
+		cache = new CertificateDTOCache();
+		ReflectionTestUtils.setField(cache, "properties", properties);
+		ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+		cache.init();
+	}
+
+	@Test
+	void keepsCachingOnceFullByEvictingLeastRecentlyUsed() throws Exception {
+		get("a");
+		get("b");
+		get("a");
+		get("c");
+
+		assertEquals(CACHE_SIZE, cache.size());
+		var misses = cache.getMisses();
+
+		// "b" was the least recently used entry when "c" came in
+		get("a");
+		get("c");
+		assertEquals(misses, cache.getMisses());
+
+		get("b");
+		assertEquals(misses + 1, cache.getMisses());
+		assertEquals(CACHE_SIZE, cache.size());
+	}
+
+	@Test
+	void missesWhenAliasIsReusedForAnotherCertificate() throws Exception {
+		get("a");
+		certificates.put("a", mock(X509Certificate.class));
+
+		var misses = cache.getMisses();
+		get("a");
+		assertEquals(misses + 1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	private CertificateDTO get(String alias) throws Exception {
+		var certificate = certificates.computeIfAbsent(alias, k -> mock(X509Certificate.class));
+		return cache.get(alias, certificate, (a, c) -> mock(CertificateDTO.class));
+	}
+}
@@ -0,0 +1,135 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.acl.AclRepository;
+import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.repository.ArchivedCertificateRepository;
+import com.example.odysseypki.repository.RenewalRepository;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExpiryServiceTests {
+	private static final int BATCH_SIZE = 2;
+	private static final long HOUR = 60 * 60 * 1000L;
+
+	@Autowired
+	private ExpiryService expiryService;
+	@Autowired
+	private CertificateService certificateService;
+	@Autowired
+	private AclRepository aclRepository;
+	@Autowired
+	private IssuerKeyCache issuerKeyCache;
+	@Autowired
+	private RenewalRepository renewalRepository;
+	@Autowired
+	private ArchivedCertificateRepository archivedCertificateRepository;
+	@Autowired
+	private OdysseyPkiProperties properties;
+
+	private int batchSize;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@BeforeEach
+	void setUp() {
+		certificateService.initializeKeyStore();
+		batchSize = properties.getExpiryBatchSize();
+		ReflectionTestUtils.setField(properties, "expiryBatchSize", BATCH_SIZE);
+	}
+
+	@AfterEach
+	void tearDown() {
+		ReflectionTestUtils.setField(properties, "expiryBatchSize", batchSize);
+	}
+
+	@Test
+	void archivesPastExpiredCasThatStillHaveChildren() throws Exception {
+		var now = System.currentTimeMillis();
+
+		// Expire first and are skipped on every pass, more of them than fit into one batch
+		for (var i = 0; i <= BATCH_SIZE; i++) {
+			var ca = create("expired-ca-" + i, CertificateService.MIDDLE_ALIAS, now - 10 * HOUR, now - 5 * HOUR + i, true);
+			create("child-" + i, ca.getAlias(), now - 10 * HOUR, now + HOUR, false);
+		}
+		var leaf = create("expired-leaf", CertificateService.MIDDLE_ALIAS, now - 10 * HOUR, now - HOUR, false);
+
+		expiryService.run();
+
+		assertNull(certificateService.find(leaf.getAlias()));
+		assertTrue(archivedCertificateRepository.existsById(leaf.getAlias()));
+	}
+
+	@Test
+	void renewsPastFlaggedCertificatesThatCannotBeRenewed() throws Exception {
+		var now = System.currentTimeMillis();
+		var window = properties.getRenewalWindowMillis();
+
+		// The issuer key of these is gone, so renewing them fails on every pass
+		var ca = create("keyless-ca", CertificateService.MIDDLE_ALIAS, now - window, now + 2 * window, true);
+		var failing = new ArrayList<String>();
+		for (var i = 0; i <= BATCH_SIZE; i++) {
+			var certificate = create("keyless-" + i, ca.getAlias(), now - window, now + window / 4 + i, false);
+			expiryService.flagForRenewal(certificate.getAlias(), true);
+			failing.add(certificate.getAlias());
+		}
+		aclRepository.deleteAll(List.of(ca.getAlias()));
+		issuerKeyCache.invalidate(List.of(ca.getAlias()));
+
+		var renewable = create("renewable", CertificateService.MIDDLE_ALIAS, now - window, now + window / 2, false);
+		expiryService.flagForRenewal(renewable.getAlias(), true);
+
+		expiryService.run();
+
+		assertFalse(renewalRepository.existsById(renewable.getAlias()));
+		assertEquals(failing.size(), renewalRepository.findAllById(failing).size());
+	}
+
+	@Test
+	void doesNotRenewShortLivedSuccessorOnNextScan() throws Exception {
+		var now = System.currentTimeMillis();
+
+		// Ten minutes of lifetime, far shorter than the renewal window, with two minutes left
+		var certificate = create("short-lived", CertificateService.MIDDLE_ALIAS, now - 8 * 60_000, now + 2 * 60_000, false);
+		expiryService.flagForRenewal(certificate.getAlias(), true);
+
+		expiryService.run();
+		assertFalse(renewalRepository.existsById(certificate.getAlias()));
+		var renewed = certificateService.findByCommonName("short-lived");
+		assertEquals(2, renewed.size());
+		var successor = renewed.keySet().stream()
+				.filter(alias -> !alias.equals(certificate.getAlias()))
+				.findFirst().orElseThrow();
+
+		// The successor has all of its ten minutes left, which is past half of its lifetime
+		expiryService.run();
+		assertEquals(2, certificateService.findByCommonName("short-lived").size());
+		assertTrue(renewalRepository.existsById(successor));
+	}
+
+	private Certificate create(String commonName, String parentAlias, long start, long end, boolean isCa) throws Exception {
+		var dto = new CertificateCreationDTO(parentAlias, commonName, null, commonName + "@example.com",
+				start, end, isCa, false,
+				List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()), null);
+		return isCa ? certificateService.createCaCertificate(dto) : certificateService.createEndEntityCertificate(dto);
+	}
+}
@@ -0,0 +1,144 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.Certificate;
+import com.example.odysseypki.repository.CertificateRepository;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.*;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class OcspServiceTests {
+	@Autowired
+	private CertificateService certificateService;
+	@Autowired
+	private CertificateRepository certificateRepository;
+	@Autowired
+	private OcspService ocspService;
+	@Autowired
+	private IssuerKeyCache issuerKeyCache;
+	@Autowired
+	private MockMvc mockMvc;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@BeforeEach
+	void setUp() {
+		certificateService.initializeKeyStore();
+	}
+
+	@Test
+	void revocationDuringLookupIsNotCachedAsGood() throws Exception {
+		var certificate = issue("racing");
+		var request = request(certificate, null);
+
+		// The lookup reads GOOD, then waits in the signing step until the revocation went through
+		var statusRead = new CountDownLatch(1);
+		var revoked = new CountDownLatch(1);
+		ReflectionTestUtils.setField(ocspService, "issuerKeyCache", new IssuerKeyCache() {
+			@Override
+			public PrivateKey get(String alias) throws GeneralSecurityException, IOException {
+				statusRead.countDown();
+				try {
+					revoked.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return issuerKeyCache.get(alias);
+			}
+		});
+
+		var executor = Executors.newSingleThreadExecutor();
+		try {
+			var lookup = executor.submit(() -> ocspService.respond(request));
+			assertTrue(statusRead.await(10, TimeUnit.SECONDS));
+			certificateService.revoke(certificate.getAlias(), CRLReason.keyCompromise);
+			revoked.countDown();
+
+			assertEquals(CertificateStatus.GOOD, certificateStatus(lookup.get(10, TimeUnit.SECONDS)));
+		} finally {
+			revoked.countDown();
+			executor.shutdownNow();
+			ReflectionTestUtils.setField(ocspService, "issuerKeyCache", issuerKeyCache);
+		}
+
+		assertInstanceOf(RevokedStatus.class, certificateStatus(ocspService.respond(request)));
+	}
+
+	@Test
+	void getAcceptsRequestsContainingSlashes() throws Exception {
+		var certificate = issue("slashes");
+
+		// Nonces are ignored by the responder, they only vary the encoding until it contains a '/'
+		String encoded = null;
+		for (var nonce = 0; encoded == null || !encoded.contains("/"); nonce++)
+			encoded = Base64.getEncoder().encodeToString(request(certificate, BigInteger.valueOf(nonce)));
+
+		var response = mockMvc.perform(get("/api/v1/ocsp/" + encoded))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+		assertEquals(CertificateStatus.GOOD, certificateStatus(response));
+	}
+
+	private Certificate issue(String commonName) throws Exception {
+		var now = System.currentTimeMillis();
+		return certificateService.createEndEntityCertificate(new CertificateCreationDTO(
+				CertificateService.MIDDLE_ALIAS, commonName, null, commonName + "@example.com",
+				now, now + 60_000, false, false,
+				List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()), null));
+	}
+
+	private byte[] request(Certificate certificate, BigInteger nonce) throws Exception {
+		var issuer = new JcaX509CertificateHolder(certificateRepository.find(CertificateService.MIDDLE_ALIAS));
+		var id = new CertificateID(
+				new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+				issuer, certificate.getX509Certificate().getSerialNumber());
+
+		var builder = new OCSPReqBuilder().addRequest(id);
+		if (nonce != null)
+			builder.setRequestExtensions(new Extensions(new Extension(
+					OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce.toByteArray()))));
+		return builder.build().getEncoded();
+	}
+
+	private static CertificateStatus certificateStatus(byte[] encoded) throws Exception {
+		var response = new OCSPResp(encoded);
+		assertEquals(OCSPResp.SUCCESSFUL, response.getStatus());
+		return ((BasicOCSPResp) response.getResponseObject()).getResponses()[0].getCertStatus();
+	}
+}
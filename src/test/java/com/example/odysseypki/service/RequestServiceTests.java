@@ -0,0 +1,135 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.OdysseyPkiProperties;
+import com.example.odysseypki.certificate.KeyAlgorithm;
+import com.example.odysseypki.entity.Request;
+import com.example.odysseypki.repository.RequestRepository;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RequestServiceTests {
+	@Autowired
+	private RequestService requestService;
+	@Autowired
+	private IssuanceJobQueue issuanceJobQueue;
+	@Autowired
+	private CertificateService certificateService;
+	@Autowired
+	private RequestRepository requestRepository;
+	@Autowired
+	private OdysseyPkiProperties properties;
+	@Autowired
+	private MockMvc mockMvc;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@BeforeEach
+	void setUp() {
+		certificateService.initializeKeyStore();
+	}
+
+	@Test
+	void issuesApprovedNameForEcCertificationRequest() throws Exception {
+		var keyPair = KeyAlgorithm.EC_P256.generate();
+		var csr = new JcaPKCS10CertificationRequestBuilder(
+				new X500Name("CN=alice,UID=7,O=Injected,E=alice@example.com"), keyPair.getPublic())
+				.build(new JcaContentSignerBuilder("SHA256WithECDSA").setProvider("BC").build(keyPair.getPrivate()));
+
+		var request = requestService.createFromCsr(csr.getEncoded());
+		requestService.accept(request.getId());
+		var issued = issuanceJobQueue.awaitCompletion(request.getId(), 30_000).get();
+		assertEquals(Request.IssuanceStatus.ISSUED, issued.getIssuanceStatus());
+
+		var certificate = certificateService.find(issued.getCertificateAlias());
+		assertArrayEquals(keyPair.getPublic().getEncoded(), certificate.getPublicKey().getEncoded());
+
+		// Only the approved fields end up in the subject
+		var subject = new JcaX509CertificateHolder(certificate).getSubject();
+		assertEquals(0, subject.getRDNs(BCStyle.O).length);
+		assertEquals(0, subject.getRDNs(BCStyle.EmailAddress).length);
+		assertEquals(1, subject.getRDNs(BCStyle.CN).length);
+		assertEquals(1, subject.getRDNs(BCStyle.UID).length);
+
+		// digitalSignature and keyAgreement, never keyEncipherment for an EC key
+		var keyUsage = certificate.getKeyUsage();
+		assertTrue(keyUsage[0]);
+		assertFalse(keyUsage[2]);
+		assertTrue(keyUsage[4]);
+	}
+
+	@Test
+	void refusesCertificationRequestForUnsupportedCurve() throws Exception {
+		var generator = KeyPairGenerator.getInstance("EC", "BC");
+		generator.initialize(new ECGenParameterSpec("secp256k1"));
+		var keyPair = generator.generateKeyPair();
+		var csr = new JcaPKCS10CertificationRequestBuilder(new X500Name("CN=dave"), keyPair.getPublic())
+				.build(new JcaContentSignerBuilder("SHA256WithECDSA").setProvider("BC").build(keyPair.getPrivate()));
+
+		var requests = requestRepository.count();
+		mockMvc.perform(post("/api/v1/requests/csr").content(csr.getEncoded()))
+				.andExpect(status().isBadRequest());
+		assertEquals(requests, requestRepository.count());
+	}
+
+	@Test
+	void resumedJobFindsCertificateOfEarlierAttempt() throws Exception {
+		var request = requestService.create("bob", "bob@example.com", "8");
+		requestService.accept(request.getId());
+		var issued = issuanceJobQueue.awaitCompletion(request.getId(), 30_000).get();
+		assertEquals(Request.IssuanceStatus.ISSUED, issued.getIssuanceStatus());
+
+		// As if the process stopped after the certificate was stored but before the request was saved
+		issued.setIssuanceStatus(Request.IssuanceStatus.RUNNING);
+		issued.setCertificateAlias(null);
+		requestRepository.save(issued);
+
+		issuanceJobQueue.resume();
+		var resumed = issuanceJobQueue.awaitCompletion(request.getId(), 30_000).get();
+		assertEquals(Request.IssuanceStatus.ISSUED, resumed.getIssuanceStatus());
+		assertEquals(List.of(resumed.getCertificateAlias()), List.copyOf(certificateService.findByCommonName("bob").keySet()));
+	}
+
+	@Test
+	void failsWithoutRetryingWhenIssuerIsMissing() throws Exception {
+		var issuerAlias = properties.getRequestIssuerAlias();
+		ReflectionTestUtils.setField(properties, "requestIssuerAlias", "missing");
+		try {
+			var request = requestService.create("carol", "carol@example.com", "9");
+			requestService.accept(request.getId());
+
+			var failed = issuanceJobQueue.awaitCompletion(request.getId(), 30_000).get();
+			assertEquals(Request.IssuanceStatus.FAILED, failed.getIssuanceStatus());
+			assertEquals(1, failed.getIssuanceAttempts());
+		} finally {
+			ReflectionTestUtils.setField(properties, "requestIssuerAlias", issuerAlias);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.odysseypki.service;
+
+import com.example.odysseypki.dto.CertificateCreationDTO;
+import com.example.odysseypki.entity.Certificate;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Security;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RevocationServiceTests {
+	@Autowired
+	private CertificateService certificateService;
+	@Autowired
+	private RevocationService revocationService;
+
+	@BeforeAll
+	static void addProvider() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@BeforeEach
+	void setUp() {
+		certificateService.initializeKeyStore();
+	}
+
+	@Test
+	void fullCrlReflectsEveryRevocation() throws Exception {
+		var first = issue("first");
+		var second = issue("second");
+
+		var before = revocationService.getFullCrl(CertificateService.MIDDLE_ALIAS);
+		assertEquals(before, revocationService.getFullCrl(CertificateService.MIDDLE_ALIAS));
+
+		certificateService.revoke(first.getAlias(), CRLReason.keyCompromise);
+		var afterFirst = crl(revocationService.getFullCrl(CertificateService.MIDDLE_ALIAS));
+		assertNotNull(afterFirst.getRevokedCertificate(first.getX509Certificate().getSerialNumber()));
+
+		// Below the delta threshold the full CRL is still rebuilt, not only the delta
+		certificateService.revoke(second.getAlias(), CRLReason.superseded);
+		var full = revocationService.getFullCrl(CertificateService.MIDDLE_ALIAS);
+		assertTrue(full.number().compareTo(before.number()) > 0);
+		var afterSecond = crl(full);
+		assertNotNull(afterSecond.getRevokedCertificate(first.getX509Certificate().getSerialNumber()));
+		assertNotNull(afterSecond.getRevokedCertificate(second.getX509Certificate().getSerialNumber()));
+
+		var delta = crl(revocationService.getDeltaCrl(CertificateService.MIDDLE_ALIAS));
+		assertNotNull(delta.getRevokedCertificate(second.getX509Certificate().getSerialNumber()));
+	}
+
+	@Test
+	void rejectsInvalidReasons() throws Exception {
+		var certificate = issue("reason");
+
+		for (var reason : List.of(-1, 7, 11))
+			assertThrows(IllegalArgumentException.class, () -> certificateService.revoke(certificate.getAlias(), reason));
+		assertTrue(RevocationService.isValidReason(CRLReason.aACompromise));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void servesNoCrlForUnknownOrNonCaAliases() throws Exception {
+		var leaf = issue("leaf");
+		var states = (Map<String, ?>) ReflectionTestUtils.getField(revocationService, "states");
+		var size = states.size();
+
+		assertNull(revocationService.getFullCrl("unknown-alias"));
+		assertNull(revocationService.getDeltaCrl("another-unknown-alias"));
+		assertNull(revocationService.getFullCrl(leaf.getAlias()));
+		assertEquals(size, states.size());
+	}
+
+	private Certificate issue(String commonName) throws Exception {
+		var now = System.currentTimeMillis();
+		return certificateService.createEndEntityCertificate(new CertificateCreationDTO(
+				CertificateService.MIDDLE_ALIAS, commonName, null, commonName + "@example.com",
+				now, now + 60_000, false, false,
+				List.of(Certificate.KeyUsageValue.DIGITAL_SIGNATURE.name()), null));
+	}
+
+	private static X509CRLHolder crl(RevocationService.EncodedCrl crl) throws Exception {
+		return new X509CRLHolder(crl.encoded());
+	}
+}